@@ -3,6 +3,7 @@ package mysite.com.real.auth.controller;
 import lombok.RequiredArgsConstructor;
 import mysite.com.real.auth.dto.AuthenticationResponse;
 import mysite.com.real.auth.dto.LoginRequest;
+import mysite.com.real.auth.dto.RefreshTokenRequest;
 import mysite.com.real.auth.dto.RegisterRequest;
 import mysite.com.real.auth.service.AuthenticationService;
 
@@ -29,4 +30,20 @@ public class AuthenticationController {
     ) {
         return ResponseEntity.ok(authenticationService.login(request));
     }
-}
\ No newline at end of file
+
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthenticationResponse> refresh(
+            @RequestBody RefreshTokenRequest request
+    ) {
+        return ResponseEntity.ok(authenticationService.refresh(request));
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @RequestBody(required = false) RefreshTokenRequest request
+    ) {
+        authenticationService.logout(authHeader, request);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,39 @@
+package mysite.com.real.auth.dto;
+
+import mysite.com.real.role.entity.Role;
+import mysite.com.real.user.entity.User;
+
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collection;
+
+// Principal produced by CustomUserDetailsService. It keeps the loaded entity so
+// callers of AuthenticationManager can use it without querying the user again.
+public class AuthenticatedUser extends org.springframework.security.core.userdetails.User {
+
+    private final transient User user;
+
+    public AuthenticatedUser(User user) {
+        this(user, user.getRoles().stream()
+                .map(Role::getName)
+                .toList());
+    }
+
+    // For users whose roles are unloaded references and whose role names are already known
+    public AuthenticatedUser(User user, Collection<String> roleNames) {
+        super(user.getEmail(),
+                user.getPasswordHash(),
+                user.isActive(),
+                true,
+                true,
+                true,
+                roleNames.stream()
+                        .map(SimpleGrantedAuthority::new)
+                        .toList());
+        this.user = user;
+    }
+
+    public User getUser() {
+        return user;
+    }
+}
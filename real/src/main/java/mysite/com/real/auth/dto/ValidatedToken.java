@@ -0,0 +1,18 @@
+package mysite.com.real.auth.dto;
+
+import io.jsonwebtoken.Claims;
+
+import java.util.Date;
+
+// Result of a single signature + expiry check on a JWT.
+// Claims returned by JJWT are immutable, so this can be shared freely between threads.
+public record ValidatedToken(String subject, Date expiration, Claims claims) {
+
+    public static ValidatedToken of(Claims claims) {
+        return new ValidatedToken(claims.getSubject(), claims.getExpiration(), claims);
+    }
+
+    public boolean isExpired() {
+        return expiration != null && expiration.before(new Date());
+    }
+}
@@ -1,12 +1,18 @@
 package mysite.com.real.auth.filter;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.RequiredArgsConstructor;
+import mysite.com.real.auth.dto.ValidatedToken;
 import mysite.com.real.auth.service.CustomUserDetailsService;
 import mysite.com.real.auth.service.JwtService;
+import mysite.com.real.auth.service.SecurityVersionService;
+import mysite.com.real.auth.service.TokenRevocationService;
+import mysite.com.real.auth.service.UserDetailsNearCache;
+import mysite.com.real.auth.service.VerifiedPrincipalCache;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -17,11 +23,36 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import java.io.IOException;
 
 @Component
-@RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final CustomUserDetailsService userDetailsService;
+    private final SecurityVersionService securityVersionService;
+    private final VerifiedPrincipalCache principalCache;
+    private final TokenRevocationService tokenRevocationService;
+    private final UserDetailsNearCache userDetailsCache;
+
+    // How the principal was resolved on a cache miss: from claims or through the
+    // user details near-cache (the database only when that misses too)
+    private final Timer claimsLoadTimer;
+    private final Timer userDetailsLoadTimer;
+
+    public JwtAuthenticationFilter(JwtService jwtService,
+                                   CustomUserDetailsService userDetailsService,
+                                   SecurityVersionService securityVersionService,
+                                   VerifiedPrincipalCache principalCache,
+                                   TokenRevocationService tokenRevocationService,
+                                   UserDetailsNearCache userDetailsCache,
+                                   MeterRegistry meterRegistry) {
+        this.jwtService = jwtService;
+        this.userDetailsService = userDetailsService;
+        this.securityVersionService = securityVersionService;
+        this.principalCache = principalCache;
+        this.tokenRevocationService = tokenRevocationService;
+        this.userDetailsCache = userDetailsCache;
+        this.claimsLoadTimer = userLoadTimer(meterRegistry, "claims");
+        this.userDetailsLoadTimer = userLoadTimer(meterRegistry, "user-details");
+    }
 
 
     @Override
@@ -43,7 +74,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         // Get Authorization header
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
-        final String userEmail;
 
         // Check if Authorization header exists and starts with "Bearer "
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -55,16 +85,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         jwt = authHeader.substring(7);
         
         try {
-            // Extract user email from JWT
-            userEmail = jwtService.extractUsername(jwt);
-
-            // If email exists and user is not already authenticated
-            if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                // Load user details from database
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+            // If user is not already authenticated
+            if (SecurityContextHolder.getContext().getAuthentication() == null) {
+                UserDetails userDetails = resolveCachedUserDetails(jwt);
+                if (userDetails == null) {
+                    userDetails = verifyAndResolve(jwt);
+                }
 
-                // Validate token
-                if (jwtService.isTokenValid(jwt, userDetails)) {
+                if (userDetails != null) {
                     // Create authentication token
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails,
@@ -89,4 +117,61 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         // Continue filter chain
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    // Token seen before on this node: skip signature check and user load
+    private UserDetails resolveCachedUserDetails(String jwt) {
+        VerifiedPrincipalCache.CachedPrincipal cached = principalCache.get(jwt);
+        if (cached == null) {
+            return null;
+        }
+        if (tokenRevocationService.isRevoked(cached.tokenId())) {
+            principalCache.invalidate(jwt);
+            return null;
+        }
+        if (jwtService.isStateless() && cached.securityVersion() != null
+                && !securityVersionService.isCurrent(cached.userDetails().getUsername(), cached.securityVersion())) {
+            principalCache.invalidate(jwt);
+            return null;
+        }
+        return cached.userDetails();
+    }
+
+    // Verify signature and expiry once, then read the email from the verified claims
+    private UserDetails verifyAndResolve(String jwt) {
+        ValidatedToken token = jwtService.verifyToken(jwt);
+        if (token.subject() == null || jwtService.isRefreshToken(token)
+                || tokenRevocationService.isRevoked(token.claims().getId())) {
+            return null;
+        }
+
+        UserDetails userDetails = resolveUserDetails(token);
+
+        // Validate token
+        if (userDetails == null || !jwtService.isTokenValid(token, userDetails)) {
+            return null;
+        }
+        principalCache.put(jwt, token, userDetails, jwtService.extractSecurityVersion(token));
+        return userDetails;
+    }
+
+    // Stateless tokens carry roles and a security version; other tokens look the user up
+    private UserDetails resolveUserDetails(ValidatedToken token) {
+        Long tokenVersion = jwtService.extractSecurityVersion(token);
+        if (jwtService.isStateless() && tokenVersion != null) {
+            return claimsLoadTimer.record(() -> securityVersionService.isCurrent(token.subject(), tokenVersion)
+                    ? jwtService.extractUserDetails(token)
+                    : null);
+        }
+
+        // Local map, then Redis, then the database
+        return userDetailsLoadTimer.record(() ->
+                userDetailsCache.get(token.subject(), userDetailsService::loadUserByUsername));
+    }
+
+    private static Timer userLoadTimer(MeterRegistry registry, String source) {
+        return Timer.builder("auth.user.load")
+                .description("Principal resolution after token verification")
+                .tag("source", source)
+                .register(registry);
+    }
+}
@@ -1,40 +1,80 @@
 package mysite.com.real.auth.service;
 
-import lombok.RequiredArgsConstructor;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import mysite.com.real.auth.dto.AuthenticatedUser;
 import mysite.com.real.auth.dto.AuthenticationResponse;
 import mysite.com.real.auth.dto.LoginRequest;
+import mysite.com.real.auth.dto.RefreshTokenRequest;
 import mysite.com.real.auth.dto.RegisterRequest;
+import mysite.com.real.auth.dto.ValidatedToken;
+import mysite.com.real.cache.service.EntityCacheInvalidator;
+import mysite.com.real.datasource.DataSourceRouting;
 import mysite.com.real.role.entity.Role;
-import mysite.com.real.role.repository.RoleRepository;
+import mysite.com.real.role.service.RoleRegistry;
 import mysite.com.real.user.entity.User;
 import mysite.com.real.user.repository.UserRepository;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class AuthenticationService {
 
+    private static final String DEFAULT_ROLE = "ROLE_USER";
+
     private final UserRepository userRepository;
-    private final RoleRepository roleRepository;
+    private final RoleRegistry roleRegistry;
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
     private final AuthenticationManager authenticationManager;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationService tokenRevocationService;
+    private final MeterRegistry meterRegistry;
+    private final EntityCacheInvalidator entityCacheInvalidator;
+
+    // Registered up front so each login records without a registry lookup
+    private final Timer loginSuccessTimer;
+    private final Timer loginFailureTimer;
+
+    public AuthenticationService(UserRepository userRepository,
+                                 RoleRegistry roleRegistry,
+                                 PasswordEncoder passwordEncoder,
+                                 JwtService jwtService,
+                                 AuthenticationManager authenticationManager,
+                                 RefreshTokenService refreshTokenService,
+                                 TokenRevocationService tokenRevocationService,
+                                 MeterRegistry meterRegistry,
+                                 EntityCacheInvalidator entityCacheInvalidator) {
+        this.userRepository = userRepository;
+        this.roleRegistry = roleRegistry;
+        this.passwordEncoder = passwordEncoder;
+        this.jwtService = jwtService;
+        this.authenticationManager = authenticationManager;
+        this.refreshTokenService = refreshTokenService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.meterRegistry = meterRegistry;
+        this.entityCacheInvalidator = entityCacheInvalidator;
+        this.loginSuccessTimer = meterRegistry.timer("auth.login", "outcome", "success");
+        this.loginFailureTimer = meterRegistry.timer("auth.login", "outcome", "failure");
+    }
 
     public AuthenticationResponse register(RegisterRequest request) {
-        // Check if user already exists
-        if (userRepository.existsByEmail(request.getEmail())) {
-            throw new RuntimeException("Email already registered");
-        }
-
         // Get default USER role
-        Role userRole = roleRepository.findByName("ROLE_USER")
+        Role userRole = roleRegistry.getReference(DEFAULT_ROLE)
                 .orElseThrow(() -> new RuntimeException("Default role not found"));
 
         Set<Role> roles = new HashSet<>();
@@ -52,19 +92,70 @@ public class AuthenticationService {
                 .roles(roles)
                 .build();
 
-        userRepository.save(user);
+        // The unique email constraint replaces an existsByEmail pre-check
+        try {
+            userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            if (userRepository.existsByEmail(request.getEmail())) {
+                throw new RuntimeException("Email already registered");
+            }
+            throw e;
+        }
+        // Other nodes may have cached "no such user" for this email
+        entityCacheInvalidator.evictUsersAfterCommit(List.of(user.getId()));
 
-        // Generate JWT tokens
-        var userDetails = org.springframework.security.core.userdetails.User.builder()
-                .username(user.getEmail())
-                .password(user.getPasswordHash())
-                .authorities(user.getRoles().stream()
-                        .map(role -> role.getName())
-                        .toArray(String[]::new))
-                .build();
+        // The role is an unloaded reference, so authorities come from the name we looked up
+        return issueTokens(new AuthenticatedUser(user, List.of(DEFAULT_ROLE)));
+    }
+
+    public AuthenticationResponse login(LoginRequest request) {
+        // End-to-end login time; the BCrypt and user load parts have their own timers
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Authentication authentication;
+        try {
+            authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(
+                            request.getEmail(),
+                            request.getPassword()
+                    )
+            );
+        } catch (AuthenticationException e) {
+            sample.stop(loginFailureTimer);
+            log.info("Authentication failed for {}: {}", request.getEmail(), e.getMessage());
+            throw e;
+        }
+        sample.stop(loginSuccessTimer);
+
+        // The principal already carries the user loaded during authentication
+        AuthenticatedUser principal = (AuthenticatedUser) authentication.getPrincipal();
+
+        // Check if user is active
+        if (!principal.getUser().isActive()) {
+            throw new RuntimeException("User account is deactivated");
+        }
+
+        return issueTokens(principal);
+    }
 
-        var jwtToken = jwtService.generateToken(userDetails);
-        var refreshToken = jwtService.generateRefreshToken(userDetails);
+    public AuthenticationResponse refresh(RefreshTokenRequest request) {
+        ValidatedToken presented = refreshTokenService.verify(request.getRefreshToken());
+
+        // From the primary: a lagging replica could still show a user as active, or an older
+        // security version, after the change that should end this token family
+        var user = DataSourceRouting.onPrimary(() -> userRepository.findByEmail(presented.subject()))
+                .orElseThrow(() -> new BadCredentialsException("Invalid refresh token"));
+
+        // Deactivation, password and role changes bump the security version and end the family
+        Long tokenVersion = jwtService.extractSecurityVersion(presented);
+        if (!user.isActive() || tokenVersion == null || tokenVersion < user.getSecurityVersion()) {
+            refreshTokenService.revokeFamily(presented);
+            throw new BadCredentialsException("Refresh token no longer valid");
+        }
+
+        // Generate JWT tokens
+        var userDetails = new AuthenticatedUser(user);
+        var refreshToken = refreshTokenService.rotate(presented, userDetails, user.getSecurityVersion());
+        var jwtToken = jwtService.generateToken(userDetails, user.getSecurityVersion());
 
         return AuthenticationResponse.builder()
                 .token(jwtToken)
@@ -75,43 +166,27 @@ public class AuthenticationService {
                 .build();
     }
 
-    public AuthenticationResponse login(LoginRequest request) {
-        System.out.println("Attempting login for: " + request.getEmail());
-        
-        try {
-                authenticationManager.authenticate(
-                        new UsernamePasswordAuthenticationToken(
-                                request.getEmail(),
-                                request.getPassword()
-                        )
-                );
-                System.out.println("Authentication successful!");
-        } catch (Exception e) {
-                System.out.println("Authentication failed: " + e.getMessage());
-                e.printStackTrace();
-                throw e;
+    // Revoke the presented access token and, if given, its refresh token family
+    public void logout(String authHeader, RefreshTokenRequest request) {
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            try {
+                ValidatedToken accessToken = jwtService.verifyToken(authHeader.substring(7));
+                tokenRevocationService.revoke(accessToken.claims().getId(), accessToken.expiration().getTime());
+            } catch (JwtException e) {
+                // Expired or invalid token: nothing left to revoke
+            }
         }
 
-        // Get user from database
-        var user = userRepository.findByEmail(request.getEmail())
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        // Check if user is active
-        if (!user.isActive()) {
-            throw new RuntimeException("User account is deactivated");
+        if (request != null && request.getRefreshToken() != null) {
+            refreshTokenService.revokeFamily(refreshTokenService.verify(request.getRefreshToken()));
         }
+    }
 
-        // Generate JWT tokens
-        var userDetails = org.springframework.security.core.userdetails.User.builder()
-                .username(user.getEmail())
-                .password(user.getPasswordHash())
-                .authorities(user.getRoles().stream()
-                        .map(role -> role.getName())
-                        .toArray(String[]::new))
-                .build();
-
-        var jwtToken = jwtService.generateToken(userDetails);
-        var refreshToken = jwtService.generateRefreshToken(userDetails);
+    // Generate JWT tokens
+    private AuthenticationResponse issueTokens(AuthenticatedUser userDetails) {
+        User user = userDetails.getUser();
+        var jwtToken = jwtService.generateToken(userDetails, user.getSecurityVersion());
+        var refreshToken = refreshTokenService.startFamily(userDetails, user.getSecurityVersion());
 
         return AuthenticationResponse.builder()
                 .token(jwtToken)
@@ -121,4 +196,4 @@ public class AuthenticationService {
                 .lastName(user.getLastName())
                 .build();
     }
-}
\ No newline at end of file
+}
@@ -1,26 +1,34 @@
 package mysite.com.real.auth.service;
 
 import lombok.RequiredArgsConstructor;
+import mysite.com.real.auth.dto.AuthenticatedUser;
+import mysite.com.real.cache.service.EntityCacheInvalidator;
+import mysite.com.real.datasource.DataSourceRouting;
 import mysite.com.real.user.entity.User;
 import mysite.com.real.user.repository.UserRepository;
 
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.stream.Collectors;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
+    private final EntityCacheInvalidator entityCacheInvalidator;
 
+    // Read from the replica (findByEmail is a read-only transaction of its own). An unknown
+    // email is retried on the primary once that transaction has ended: the user may have
+    // registered moments ago, possibly through another node, and not have replicated yet.
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
         User user = userRepository.findByEmail(email)
+                .or(() -> DataSourceRouting.onPrimary(() -> userRepository.findByEmail(email)))
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
 
         // Check if user is active
@@ -28,18 +36,21 @@ public class CustomUserDetailsService implements UserDetailsService {
             throw new UsernameNotFoundException("User account is deactivated");
         }
 
-        return org.springframework.security.core.userdetails.User.builder()
-                .username(user.getEmail())
-                .password(user.getPasswordHash())
-                .authorities(user.getRoles().stream()
-                        .map(role -> new SimpleGrantedAuthority(role.getName()))
-                        .collect(Collectors.toList()))
-                .accountExpired(false)
-                .accountLocked(false)
-                .credentialsExpired(false)
-                .disabled(!user.isActive())
-                .build();
+        // Carry the entity so login does not have to load it a second time
+        return new AuthenticatedUser(user);
     }
 
-    
+    // Called by DaoAuthenticationProvider to store a hash re-encoded at the current BCrypt cost
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePasswordHash(user.getUsername(), newPassword);
+        if (user instanceof AuthenticatedUser authenticatedUser) {
+            entityCacheInvalidator.evictUsersAfterCommit(List.of(authenticatedUser.getUser().getId()));
+            authenticatedUser.getUser().setPasswordHash(newPassword);
+            return new AuthenticatedUser(authenticatedUser.getUser());
+        }
+        return org.springframework.security.core.userdetails.User.withUserDetails(user)
+                .password(newPassword)
+                .build();
+    }
 }
\ No newline at end of file
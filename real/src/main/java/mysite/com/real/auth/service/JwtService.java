@@ -1,17 +1,29 @@
 package mysite.com.real.auth.service;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import mysite.com.real.auth.dto.ValidatedToken;
+
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
-import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import javax.crypto.SecretKey;
@@ -19,6 +31,12 @@ import javax.crypto.SecretKey;
 @Service
 public class JwtService {
 
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_SECURITY_VERSION = "sv";
+    public static final String CLAIM_TOKEN_TYPE = "typ";
+    public static final String CLAIM_FAMILY_ID = "fid";
+    public static final String TOKEN_TYPE_REFRESH = "refresh";
+
     @Value("${application.security.jwt.secret-key}")
     private String secretKey;
 
@@ -28,6 +46,43 @@ public class JwtService {
     @Value("${application.security.jwt.refresh-token.expiration}")
     private long refreshExpiration;
 
+    // When true, requests are authenticated from token claims without loading the user
+    @Value("${application.security.jwt.stateless:false}")
+    private boolean stateless;
+
+    // Built once at startup; both are immutable and thread-safe
+    private SecretKey signInKey;
+    private JwtParser jwtParser;
+
+    // Registered up front so the hot path records without a registry lookup
+    private final Timer verifyValidTimer;
+    private final Timer verifyExpiredTimer;
+    private final Timer verifyInvalidTimer;
+    private final Timer issueAccessTimer;
+    private final Timer issueRefreshTimer;
+
+    public JwtService(MeterRegistry meterRegistry) {
+        this.verifyValidTimer = verifyTimer(meterRegistry, "valid");
+        this.verifyExpiredTimer = verifyTimer(meterRegistry, "expired");
+        this.verifyInvalidTimer = verifyTimer(meterRegistry, "invalid");
+        this.issueAccessTimer = issueTimer(meterRegistry, "access");
+        this.issueRefreshTimer = issueTimer(meterRegistry, "refresh");
+    }
+
+    @PostConstruct
+    void init() {
+        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
+        this.signInKey = Keys.hmacShaKeyFor(keyBytes);
+        this.jwtParser = Jwts.parser()
+                .verifyWith(signInKey)
+                .build();
+    }
+
+    // Parse the token once: checks signature and expiry, throws JwtException otherwise
+    public ValidatedToken verifyToken(String token) {
+        return ValidatedToken.of(extractAllClaims(token));
+    }
+
     // Extract username (email) from token
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
@@ -46,12 +101,37 @@ public class JwtService {
 
     // Generate token with extra claims
     public String generateToken(Map<String, Object> extraClaims, UserDetails userDetails) {
-        return buildToken(extraClaims, userDetails, jwtExpiration);
+        return issueAccessTimer.record(() -> buildToken(extraClaims, userDetails, jwtExpiration));
+    }
+
+    // Generate token carrying roles and security version for stateless authentication
+    public String generateToken(UserDetails userDetails, long securityVersion) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_ROLES, userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList());
+        claims.put(CLAIM_SECURITY_VERSION, securityVersion);
+        return generateToken(claims, userDetails);
     }
 
     // Generate refresh token
     public String generateRefreshToken(UserDetails userDetails) {
-        return buildToken(new HashMap<>(), userDetails, refreshExpiration);
+        return issueRefreshTimer.record(() -> buildToken(new HashMap<>(), userDetails, refreshExpiration));
+    }
+
+    // Generate a rotating refresh token: one family per login, one id per rotation
+    public String generateRefreshToken(UserDetails userDetails, long securityVersion,
+                                       String familyId, String tokenId) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(CLAIM_TOKEN_TYPE, TOKEN_TYPE_REFRESH);
+        claims.put(CLAIM_FAMILY_ID, familyId);
+        claims.put(CLAIM_SECURITY_VERSION, securityVersion);
+        claims.put(Claims.ID, tokenId);
+        return issueRefreshTimer.record(() -> buildToken(claims, userDetails, refreshExpiration));
+    }
+
+    public long getRefreshExpiration() {
+        return refreshExpiration;
     }
 
     // Build the token
@@ -60,44 +140,86 @@ public class JwtService {
             UserDetails userDetails,
             long expiration
     ) {
+        long now = System.currentTimeMillis();
+        // Every token gets a jti so it can be revoked individually
+        Object tokenId = extraClaims.get(Claims.ID);
         return Jwts.builder()
                 .claims(extraClaims)
+                .id(tokenId != null ? tokenId.toString() : UUID.randomUUID().toString())
                 .subject(userDetails.getUsername())
-                .issuedAt(new Date())
-                .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignInKey())
+                .issuedAt(new Date(now))
+                .expiration(new Date(now + expiration))
+                .signWith(signInKey)
                 .compact();
 
     }
 
-    // Validate token
-    public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+    public boolean isStateless() {
+        return stateless;
+    }
+
+    // Refresh tokens must never be accepted as access tokens
+    public boolean isRefreshToken(ValidatedToken token) {
+        return TOKEN_TYPE_REFRESH.equals(token.claims().get(CLAIM_TOKEN_TYPE, String.class));
+    }
+
+    // Security version the token was issued with, or null for tokens without one
+    public Long extractSecurityVersion(ValidatedToken token) {
+        Number version = token.claims().get(CLAIM_SECURITY_VERSION, Number.class);
+        return version != null ? version.longValue() : null;
     }
 
-    // Check if token is expired
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    // Rebuild the principal from verified claims only
+    public UserDetails extractUserDetails(ValidatedToken token) {
+        List<?> roles = token.claims().get(CLAIM_ROLES, List.class);
+        List<SimpleGrantedAuthority> authorities = roles == null ? List.of() : roles.stream()
+                .map(role -> new SimpleGrantedAuthority(role.toString()))
+                .toList();
+        return User.withUsername(token.subject())
+                .password("")
+                .authorities(authorities)
+                .build();
     }
 
-    // Extract expiration date
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    // Validate token against already verified claims
+    public boolean isTokenValid(ValidatedToken token, UserDetails userDetails) {
+        return userDetails.getUsername().equals(token.subject()) && !token.isExpired();
     }
 
-    // Extract all claims
+    // Validate token
+    public boolean isTokenValid(String token, UserDetails userDetails) {
+        return isTokenValid(verifyToken(token), userDetails);
+    }
+
+    // Extract all claims; parse + HMAC check is timed by outcome
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                    .verifyWith((SecretKey) getSignInKey())
-                    .build()
+        long start = System.nanoTime();
+        Timer timer = verifyInvalidTimer;
+        try {
+            Claims claims = jwtParser
                     .parseSignedClaims(token)
                     .getPayload();
+            timer = verifyValidTimer;
+            return claims;
+        } catch (ExpiredJwtException e) {
+            timer = verifyExpiredTimer;
+            throw e;
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
     }
 
-    // Get signing key
-    private Key getSignInKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private static Timer verifyTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("auth.jwt.verify")
+                .description("JWT parse and signature verification")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private static Timer issueTimer(MeterRegistry registry, String type) {
+        return Timer.builder("auth.jwt.issue")
+                .description("JWT signing")
+                .tag("type", type)
+                .register(registry);
     }
-}
\ No newline at end of file
+}
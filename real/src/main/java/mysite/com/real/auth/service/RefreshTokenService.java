@@ -0,0 +1,84 @@
+package mysite.com.real.auth.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import mysite.com.real.auth.dto.ValidatedToken;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+// Stores refresh token families in Redis. Each login starts a family; every refresh
+// swaps the family's current token id, so a replayed old token is detected and the
+// whole family is revoked.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RefreshTokenService {
+
+    private static final String KEY_PREFIX = "auth:refresh:";
+    private static final RedisScript<Long> ROTATE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/refresh_rotate.lua"), Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final JwtService jwtService;
+
+    // Start a new family and return its first refresh token
+    public String startFamily(UserDetails userDetails, long securityVersion) {
+        String familyId = UUID.randomUUID().toString();
+        String tokenId = UUID.randomUUID().toString();
+        redisTemplate.opsForValue().set(KEY_PREFIX + familyId, tokenId,
+                Duration.ofMillis(jwtService.getRefreshExpiration()));
+        return jwtService.generateRefreshToken(userDetails, securityVersion, familyId, tokenId);
+    }
+
+    // Verify a presented refresh token; throws BadCredentialsException if it is not a refresh token
+    public ValidatedToken verify(String refreshToken) {
+        ValidatedToken token;
+        try {
+            token = jwtService.verifyToken(refreshToken);
+        } catch (Exception e) {
+            throw new BadCredentialsException("Invalid refresh token");
+        }
+        if (!jwtService.isRefreshToken(token) || familyId(token) == null || token.claims().getId() == null) {
+            throw new BadCredentialsException("Invalid refresh token");
+        }
+        return token;
+    }
+
+    // Swap the family's current token for a new one; replaying an old token revokes the family
+    public String rotate(ValidatedToken token, UserDetails userDetails, long securityVersion) {
+        String familyId = familyId(token);
+        String newTokenId = UUID.randomUUID().toString();
+
+        Long result = redisTemplate.execute(ROTATE_SCRIPT,
+                List.of(KEY_PREFIX + familyId),
+                token.claims().getId(),
+                newTokenId,
+                Long.toString(jwtService.getRefreshExpiration()));
+
+        if (result == null || result == 0) {
+            throw new BadCredentialsException("Refresh token expired or revoked");
+        }
+        if (result < 0) {
+            log.warn("Refresh token reuse detected for {}, family {} revoked", token.subject(), familyId);
+            throw new BadCredentialsException("Refresh token reuse detected");
+        }
+        return jwtService.generateRefreshToken(userDetails, securityVersion, familyId, newTokenId);
+    }
+
+    public void revokeFamily(ValidatedToken token) {
+        redisTemplate.delete(KEY_PREFIX + familyId(token));
+    }
+
+    private String familyId(ValidatedToken token) {
+        return token.claims().get(JwtService.CLAIM_FAMILY_ID, String.class);
+    }
+}
@@ -0,0 +1,153 @@
+package mysite.com.real.auth.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import mysite.com.real.datasource.DataSourceRouting;
+import mysite.com.real.user.repository.UserRepository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Tracks the current security version per user so stateless tokens can be revoked.
+// Lookup order: local map (short TTL) -> Redis -> MySQL. Other nodes see a bump
+// after at most version-cache-ttl, which is the staleness bound of stateless mode.
+// Versions only move forward: publishing never lowers the value in Redis, and a value
+// loaded from the database is only written where Redis has none.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SecurityVersionService {
+
+    private static final String KEY_PREFIX = "auth:sv:";
+    private static final int MAX_LOCAL_ENTRIES = 100_000;
+    private static final RedisScript<Long> PUBLISH_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/security_version_publish.lua"), Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final UserRepository userRepository;
+
+    private final Map<String, CachedVersion> localVersions = new ConcurrentHashMap<>();
+
+    @Value("${application.security.jwt.version-cache-ttl:5000}")
+    private long localTtlMillis;
+
+    @Value("${application.security.jwt.expiration}")
+    private long redisTtlMillis;
+
+    private record CachedVersion(long version, long expiresAt) {
+    }
+
+    // A token is current if it was issued at or after the latest bump
+    public boolean isCurrent(String email, long tokenVersion) {
+        return tokenVersion >= currentVersion(email);
+    }
+
+    // Current version, or Long.MAX_VALUE if the user no longer exists
+    public long currentVersion(String email) {
+        long now = System.currentTimeMillis();
+        CachedVersion cached = localVersions.get(email);
+        if (cached != null && cached.expiresAt() > now) {
+            return cached.version();
+        }
+
+        long version = loadVersion(email);
+        if (localVersions.size() >= MAX_LOCAL_ENTRIES) {
+            localVersions.clear();
+        }
+        // A live entry that appeared meanwhile was published during the load and wins
+        localVersions.merge(email, new CachedVersion(version, now + localTtlMillis),
+                (existing, loaded) -> existing.expiresAt() > now ? existing : loaded);
+        return version;
+    }
+
+    // Publish a bumped version once the surrounding transaction commits
+    public void publishAfterCommit(String email, long newVersion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(email, newVersion);
+                }
+            });
+        } else {
+            publish(email, newVersion);
+        }
+    }
+
+    // Forget a user entirely (deleted or email changed)
+    public void evictAfterCommit(String email) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(email);
+                }
+            });
+        } else {
+            evict(email);
+        }
+    }
+
+    private void publish(String email, long newVersion) {
+        localVersions.put(email, new CachedVersion(newVersion, System.currentTimeMillis() + localTtlMillis));
+        try {
+            redisTemplate.execute(PUBLISH_SCRIPT, List.of(KEY_PREFIX + email),
+                    Long.toString(newVersion), Long.toString(redisTtlMillis));
+        } catch (Exception e) {
+            // Fail closed: the old version must not stay in Redis for the token lifetime.
+            // Without the key, other nodes reload the bumped version from the database.
+            log.warn("Could not publish security version for {}, removing it: {}", email, e.getMessage());
+            try {
+                redisTemplate.delete(KEY_PREFIX + email);
+            } catch (Exception deleteFailure) {
+                log.error("Could not remove stale security version for {}: {}", email, deleteFailure.getMessage());
+            }
+        }
+    }
+
+    private void evict(String email) {
+        localVersions.remove(email);
+        try {
+            redisTemplate.delete(KEY_PREFIX + email);
+        } catch (Exception e) {
+            log.warn("Could not evict security version for {}: {}", email, e.getMessage());
+        }
+    }
+
+    private long loadVersion(String email) {
+        try {
+            String value = redisTemplate.opsForValue().get(KEY_PREFIX + email);
+            if (value != null) {
+                return Long.parseLong(value);
+            }
+        } catch (Exception e) {
+            log.warn("Redis unavailable for security version lookup, using database: {}", e.getMessage());
+        }
+
+        // From the primary: a lagging replica could return a version from before a bump,
+        // and the value is cached here and in Redis
+        Long version = DataSourceRouting.onPrimary(() -> userRepository.findSecurityVersionByEmail(email))
+                .orElse(null);
+        if (version == null) {
+            return Long.MAX_VALUE;
+        }
+        // NX: a version published while we were reading is newer than ours and must win
+        try {
+            redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + email, Long.toString(version),
+                    Duration.ofMillis(redisTtlMillis));
+        } catch (Exception e) {
+            log.debug("Could not cache security version for {}: {}", email, e.getMessage());
+        }
+        return version;
+    }
+}
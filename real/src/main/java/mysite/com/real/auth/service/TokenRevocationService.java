@@ -0,0 +1,110 @@
+package mysite.com.real.auth.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+
+// Revoked access tokens, keyed by jti. Redis is the source of truth:
+//   auth:revoked:<jti>   exact marker with a TTL matching the token's exp
+//   auth:revoked:index   sorted set (score = exp) used to rebuild node-local filters
+// Every node keeps a Bloom filter of revoked ids, so the request path only
+// talks to Redis when the filter reports a possible hit.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TokenRevocationService {
+
+    private static final String KEY_PREFIX = "auth:revoked:";
+    private static final String INDEX_KEY = "auth:revoked:index";
+    private static final String CHANNEL = "auth:revoked";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${application.security.revocation.expected-insertions:100000}")
+    private long expectedInsertions = 100_000;
+
+    @Value("${application.security.revocation.false-positive-rate:0.001}")
+    private double falsePositiveRate = 0.001;
+
+    private volatile BloomFilter current = new BloomFilter(100_000, 0.001);
+
+    // Filter being rebuilt; live revocations go into it too so none are lost during the swap
+    private volatile BloomFilter building;
+
+    @PostConstruct
+    void init() {
+        current = new BloomFilter(expectedInsertions, falsePositiveRate);
+        listenerContainer.addMessageListener(
+                (message, pattern) -> markRevokedLocally(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANNEL));
+        rebuild();
+    }
+
+    // Revoke a token until it would have expired anyway
+    public void revoke(String jti, long expiresAtMillis) {
+        long ttl = expiresAtMillis - System.currentTimeMillis();
+        if (jti == null || ttl <= 0) {
+            return;
+        }
+        redisTemplate.opsForValue().set(KEY_PREFIX + jti, "1", Duration.ofMillis(ttl));
+        redisTemplate.opsForZSet().add(INDEX_KEY, jti, expiresAtMillis);
+        markRevokedLocally(jti);
+        redisTemplate.convertAndSend(CHANNEL, jti);
+    }
+
+    public boolean isRevoked(String jti) {
+        if (jti == null || !current.mightContain(jti)) {
+            return false;
+        }
+        try {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(KEY_PREFIX + jti));
+        } catch (Exception e) {
+            // Only possible hits get here, so failing closed affects very few requests
+            log.warn("Revocation lookup failed for {}, treating token as revoked: {}", jti, e.getMessage());
+            return true;
+        }
+    }
+
+    public void markRevokedLocally(String jti) {
+        current.put(jti);
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(jti);
+        }
+    }
+
+    // Periodic full resync from Redis, which also drops ids of tokens that have expired
+    @Scheduled(fixedDelayString = "${application.security.revocation.sync-interval:30000}")
+    public void rebuild() {
+        try {
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForZSet().removeRangeByScore(INDEX_KEY, Double.NEGATIVE_INFINITY, now);
+            Long size = redisTemplate.opsForZSet().zCard(INDEX_KEY);
+
+            BloomFilter next = new BloomFilter(Math.max(expectedInsertions, size == null ? 0 : size * 2),
+                    falsePositiveRate);
+            building = next;
+            Set<String> ids = redisTemplate.opsForZSet().range(INDEX_KEY, 0, -1);
+            if (ids != null) {
+                ids.forEach(next::put);
+            }
+            current = next;
+            building = null;
+        } catch (Exception e) {
+            building = null;
+            log.warn("Could not sync revoked tokens from Redis: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package mysite.com.real.auth.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import mysite.com.real.auth.dto.AuthenticatedUser;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tools.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+// Near-cache for principals resolved from the database (stateful tokens):
+//   local Caffeine map -> Redis key "user-details:<email>" (JSON, expires after max-age)
+//   -> loader (MySQL)
+// Only what a request principal needs is stored: email, enabled, role names and the
+// security version. Never the password hash.
+//
+// Invalidation: UserService/RoleService call invalidate*AfterCommit. Once the change is
+// committed the entry is deleted from Redis and a pub/sub message drops it (and the
+// user's VerifiedPrincipalCache entries) on every node.
+//
+// Staleness bounds, if messages are lost or race with a load:
+//   - role changes and renames, activation and password changes bump the security version,
+//     and an entry is only served while its version is current, so these are seen within
+//     version-cache-ttl
+//   - anything else within max-age, after which Redis entries are reloaded; local entries
+//     live at most local-ttl
+@Slf4j
+@Service
+public class UserDetailsNearCache {
+
+    private static final String KEY_PREFIX = "user-details:";
+    private static final String CHANNEL = "user-details:invalidate";
+
+    public record CachedUserDetails(String email, boolean enabled, List<String> roles, long securityVersion,
+                                    long cachedAt) {
+
+        UserDetails toUserDetails() {
+            return User.withUsername(email)
+                    .password("")
+                    .disabled(!enabled)
+                    .authorities(roles.toArray(String[]::new))
+                    .build();
+        }
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final SecurityVersionService securityVersionService;
+    private final VerifiedPrincipalCache verifiedPrincipalCache;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long localMaxSize;
+    private final long localTtlMillis;
+    private final long maxAgeMillis;
+
+    // Messages are "<node> <email>" or "<node> *"; a node skips its own
+    private final String nodeId = UUID.randomUUID().toString();
+    // Bumped on every invalidation; a lookup that started before one does not fill the local map
+    private final AtomicLong generation = new AtomicLong();
+
+    private Cache<String, CachedUserDetails> local;
+    private Counter localHits;
+    private Counter redisHits;
+    private Counter misses;
+
+    public UserDetailsNearCache(
+            StringRedisTemplate redisTemplate,
+            RedisMessageListenerContainer listenerContainer,
+            SecurityVersionService securityVersionService,
+            VerifiedPrincipalCache verifiedPrincipalCache,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${application.security.user-details-cache.enabled:true}") boolean enabled,
+            @Value("${application.security.user-details-cache.local-max-size:10000}") long localMaxSize,
+            @Value("${application.security.user-details-cache.local-ttl:30000}") long localTtlMillis,
+            @Value("${application.security.user-details-cache.max-age:300000}") long maxAgeMillis
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.securityVersionService = securityVersionService;
+        this.verifiedPrincipalCache = verifiedPrincipalCache;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.localMaxSize = localMaxSize;
+        this.localTtlMillis = localTtlMillis;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    @PostConstruct
+    void init() {
+        local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofMillis(localTtlMillis))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, local, "user-details");
+        localHits = lookupCounter("local");
+        redisHits = lookupCounter("redis");
+        misses = lookupCounter("miss");
+        listenerContainer.addMessageListener(
+                (message, pattern) -> onMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANNEL));
+    }
+
+    // Principal for this email; the loader (CustomUserDetailsService) runs only on a miss
+    public UserDetails get(String email, Function<String, UserDetails> loader) {
+        if (!enabled) {
+            return loader.apply(email);
+        }
+
+        CachedUserDetails cached = local.getIfPresent(email);
+        if (cached != null && isCurrent(cached)) {
+            localHits.increment();
+            return cached.toUserDetails();
+        }
+
+        long startGeneration = generation.get();
+        cached = readRedis(email);
+        if (cached != null && isCurrent(cached)) {
+            putLocal(email, cached, startGeneration);
+            redisHits.increment();
+            return cached.toUserDetails();
+        }
+
+        misses.increment();
+        UserDetails loaded = loader.apply(email);
+        if (loaded instanceof AuthenticatedUser authenticatedUser) {
+            cached = new CachedUserDetails(email, loaded.isEnabled(),
+                    loaded.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList(),
+                    authenticatedUser.getUser().getSecurityVersion(), System.currentTimeMillis());
+            writeRedis(email, cached);
+            putLocal(email, cached, startGeneration);
+            return cached.toUserDetails();
+        }
+        return loaded;
+    }
+
+    // After commit: drop the user here, in Redis and on every other node
+    public void invalidateAfterCommit(String email) {
+        afterCommit(() -> {
+            invalidateLocally(email);
+            try {
+                redisTemplate.delete(KEY_PREFIX + email);
+            } catch (Exception e) {
+                log.warn("Could not remove cached principal for {}: {}", email, e.getMessage());
+            }
+            broadcast(email);
+        });
+    }
+
+    public long localSize() {
+        return local.estimatedSize();
+    }
+
+    // An entry whose security version was bumped since it was cached is a miss
+    private boolean isCurrent(CachedUserDetails cached) {
+        return System.currentTimeMillis() - cached.cachedAt() < maxAgeMillis
+                && securityVersionService.isCurrent(cached.email(), cached.securityVersion());
+    }
+
+    private void putLocal(String email, CachedUserDetails cached, long startGeneration) {
+        local.put(email, cached);
+        // An invalidation arrived while we were reading; what we read may predate it
+        if (generation.get() != startGeneration) {
+            local.invalidate(email);
+        }
+    }
+
+    private CachedUserDetails readRedis(String email) {
+        try {
+            String json = redisTemplate.opsForValue().get(KEY_PREFIX + email);
+            return json == null ? null : objectMapper.readValue(json, CachedUserDetails.class);
+        } catch (Exception e) {
+            log.debug("Cached principal lookup failed for {}: {}", email, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeRedis(String email, CachedUserDetails cached) {
+        try {
+            // Expires with the entry, so Redis only holds principals used within max-age
+            redisTemplate.opsForValue().set(KEY_PREFIX + email, objectMapper.writeValueAsString(cached),
+                    Duration.ofMillis(maxAgeMillis));
+        } catch (Exception e) {
+            log.debug("Could not cache principal for {}: {}", email, e.getMessage());
+        }
+    }
+
+    private void invalidateLocally(String email) {
+        generation.incrementAndGet();
+        local.invalidate(email);
+        verifiedPrincipalCache.invalidateUser(email);
+    }
+
+    private void onMessage(String message) {
+        String[] parts = message.split(" ", 2);
+        if (parts.length == 2 && !parts[0].equals(nodeId)) {
+            invalidateLocally(parts[1]);
+        }
+    }
+
+    private void broadcast(String email) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, nodeId + " " + email);
+        } catch (Exception e) {
+            log.warn("Could not broadcast principal invalidation for {}: {}", email, e.getMessage());
+        }
+    }
+
+    private Counter lookupCounter(String result) {
+        return Counter.builder("auth.user.details.lookups")
+                .description("Principal lookups by the tier that answered them")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package mysite.com.real.auth.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import mysite.com.real.auth.dto.ValidatedToken;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Remembers principals for bearer tokens that already passed verification, keyed by
+// a SHA-256 digest of the token. Entries live until the token's exp or the configured
+// TTL, whichever comes first. UserDetailsNearCache invalidates entries on every node
+// when a user or role changes; the TTL bounds staleness if that message is lost.
+// A per-email index of cache keys makes dropping one user's tokens independent of cache size.
+@Service
+public class VerifiedPrincipalCache {
+
+    @Value("${application.security.principal-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${application.security.principal-cache.ttl:60000}")
+    private long ttlMillis;
+
+    private final MeterRegistry meterRegistry;
+    private Cache<String, CachedPrincipal> cache;
+    // email -> digests of that user's cached tokens; each set is only touched inside compute
+    private final Map<String, Set<String>> keysByEmail = new ConcurrentHashMap<>();
+
+    public VerifiedPrincipalCache(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public record CachedPrincipal(UserDetails userDetails, long expiresAt, Long securityVersion, String tokenId) {
+    }
+
+    @PostConstruct
+    void init() {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.creating((String key, CachedPrincipal value) -> {
+                    long untilExpiry = value.expiresAt() - System.currentTimeMillis();
+                    return Duration.ofMillis(Math.max(0, Math.min(untilExpiry, ttlMillis)));
+                }))
+                .removalListener((String key, CachedPrincipal value, RemovalCause cause) -> {
+                    if (key != null && value != null && cause != RemovalCause.REPLACED) {
+                        unindex(value.userDetails().getUsername(), key);
+                    }
+                })
+                .recordStats()
+                .build();
+        // Hit ratio, evictions and size as cache.* meters
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "verified-principals");
+    }
+
+    // Cached principal for this token, or null on a miss
+    public CachedPrincipal get(String jwt) {
+        return cache.getIfPresent(digest(jwt));
+    }
+
+    public void put(String jwt, ValidatedToken token, UserDetails userDetails, Long securityVersion) {
+        if (token.expiration() == null) {
+            return;
+        }
+        String key = digest(jwt);
+        CachedPrincipal principal = new CachedPrincipal(userDetails, token.expiration().getTime(), securityVersion,
+                token.claims().getId());
+        // Indexed and cached in one step, so a concurrent removal cannot unindex a live entry
+        keysByEmail.compute(userDetails.getUsername(), (email, keys) -> {
+            Set<String> indexed = keys == null ? new HashSet<>() : keys;
+            indexed.add(key);
+            cache.put(key, principal);
+            return indexed;
+        });
+    }
+
+    public void invalidate(String jwt) {
+        cache.invalidate(digest(jwt));
+    }
+
+    // Drop every cached token of this user. Called by UserDetailsNearCache after commit.
+    public void invalidateUser(String email) {
+        Set<String> keys = keysByEmail.remove(email);
+        if (keys != null) {
+            cache.invalidateAll(keys);
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    // Removal listener: expired, evicted or invalidated entries leave the index
+    private void unindex(String email, String key) {
+        keysByEmail.computeIfPresent(email, (e, keys) -> {
+            // Put back meanwhile (the listener runs asynchronously): still indexed
+            if (!cache.asMap().containsKey(key)) {
+                keys.remove(key);
+            }
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private static String digest(String jwt) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(jwt.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
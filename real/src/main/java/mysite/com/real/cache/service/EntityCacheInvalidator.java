@@ -0,0 +1,142 @@
+package mysite.com.real.cache.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import mysite.com.real.role.entity.Role;
+import mysite.com.real.user.entity.User;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+// Keeps the Hibernate second-level cache (profile l2cache) coherent across nodes.
+// Hibernate already evicts what this node writes through it; this covers the rest:
+//   - other nodes, told over Redis pub/sub once the transaction commits
+//   - writes that bypass Hibernate (JDBC batch import), evicted locally as well
+// Does nothing when the second-level cache is off.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EntityCacheInvalidator {
+
+    public static final String USERS_REGION = "users";
+    public static final String USER_ROLES_REGION = "users.roles";
+    public static final String USERS_BY_EMAIL_REGION = "users.by-email";
+    public static final String ROLES_REGION = "roles";
+    public static final String ROLES_BY_NAME_REGION = "roles.by-name";
+
+    private static final String CHANNEL = "l2cache:evict";
+    private static final String USER_ROLES_ROLE = User.class.getName() + ".roles";
+
+    // Messages are "<node> users <id,id,...>" or "<node> roles"; a node skips its own
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private Cache cache;
+
+    @PostConstruct
+    void init() {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        if (!sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled()) {
+            return;
+        }
+        cache = sessionFactory.getCache();
+        listenerContainer.addMessageListener(
+                (message, pattern) -> onMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANNEL));
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    // The users (entity and role collection) and every cached findByEmail result, since an
+    // email may have changed or a cached "no such user" may now be wrong
+    public void evictUsersAfterCommit(Collection<Long> userIds) {
+        if (isEnabled()) {
+            afterCommit(() -> {
+                evictUsers(userIds);
+                broadcast("users " + userIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+            });
+        }
+    }
+
+    // Rows inserted without Hibernate: only cached findByEmail misses can be wrong
+    public void evictUserQueriesAfterCommit() {
+        evictUsersAfterCommit(List.of());
+    }
+
+    public void evictRolesAfterCommit() {
+        if (isEnabled()) {
+            afterCommit(() -> {
+                evictRoles();
+                broadcast("roles");
+            });
+        }
+    }
+
+    private void evictUsers(Collection<Long> userIds) {
+        for (Long id : userIds) {
+            cache.evictEntityData(User.class, id);
+            cache.evictCollectionData(USER_ROLES_ROLE, id);
+        }
+        cache.evictQueryRegion(USERS_BY_EMAIL_REGION);
+    }
+
+    private void evictRoles() {
+        cache.evictEntityData(Role.class);
+        cache.evictQueryRegion(ROLES_BY_NAME_REGION);
+    }
+
+    private void onMessage(String message) {
+        String[] parts = message.split(" ", 3);
+        if (parts[0].equals(nodeId)) {
+            return;
+        }
+        switch (parts[1]) {
+            case "users" -> evictUsers(parts.length < 3 || parts[2].isEmpty()
+                    ? List.of()
+                    : Arrays.stream(parts[2].split(",")).map(Long::valueOf).toList());
+            case "roles" -> evictRoles();
+            default -> log.warn("Unknown cache eviction message: {}", message);
+        }
+    }
+
+    private void broadcast(String message) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, nodeId + " " + message);
+        } catch (Exception e) {
+            log.warn("Could not broadcast cache eviction, other nodes rely on region TTLs: {}", e.getMessage());
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
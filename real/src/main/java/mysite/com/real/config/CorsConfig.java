@@ -35,7 +35,11 @@ public class CorsConfig {
         // Expose headers so frontend can read them
         configuration.setExposedHeaders(List.of(
             "Authorization",
-            "Content-Type"
+            "Content-Type",
+            "X-RateLimit-Limit",
+            "X-RateLimit-Remaining",
+            "X-RateLimit-Reset",
+            "Retry-After"
         ));
 
         // Set to true if using cookies, false for JWT in headers only
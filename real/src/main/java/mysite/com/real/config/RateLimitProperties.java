@@ -0,0 +1,48 @@
+package mysite.com.real.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import mysite.com.real.ratelimit.dto.RateLimitAlgorithm;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// application.rate-limit.* : global defaults plus per-route policies
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "application.rate-limit")
+public class RateLimitProperties {
+
+    private RateLimitAlgorithm algorithm = RateLimitAlgorithm.TOKEN_BUCKET;
+    private long limit = 60;
+    private Duration window = Duration.ofMinutes(1);
+    private List<Policy> policies = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Policy {
+        private String name;
+        // Spring path pattern, e.g. /api/admin/**
+        private String pattern;
+        // Empty means any method
+        private Set<String> methods = new HashSet<>();
+        // Quota units one request costs
+        private int cost = 1;
+        // Null means the global algorithm / window
+        private RateLimitAlgorithm algorithm;
+        private Duration window;
+        // Limit per role (ROLE_ADMIN, ROLE_USER, ...) and ANONYMOUS for unauthenticated clients
+        private Map<String, Long> limits = new HashMap<>();
+        // Limit for authenticated users none of whose roles is listed; null means the global limit
+        private Long defaultLimit;
+    }
+}
@@ -1,8 +1,14 @@
 package mysite.com.real.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import mysite.com.real.auth.filter.JwtAuthenticationFilter;
+import mysite.com.real.auth.service.BulkheadPasswordEncoder;
 import mysite.com.real.auth.service.CustomUserDetailsService;
+import mysite.com.real.filter.RateLimitingFilter;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -18,12 +24,13 @@ import org.springframework.security.config.annotation.web.configurers.AbstractHt
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.config.Customizer;
 
+import java.time.Duration;
+
 
 @Configuration
 @EnableWebSecurity
@@ -32,11 +39,40 @@ import org.springframework.security.config.Customizer;
 public class SecurityConfiguration {
 
     private final JwtAuthenticationFilter jwtAuthFilter;
+    private final RateLimitingFilter rateLimitingFilter;
     //private final UserDetailsService userDetailsService;
     private final CustomUserDetailsService userDetailsService;
 
+    // Fixed BCrypt cost; 0 means calibrate at startup to target-hash-time
+    @Value("${application.security.password.strength:0}")
+    private int passwordStrength;
+
+    @Value("${application.security.password.target-hash-time:250ms}")
+    private Duration targetHashTime;
+
+    @Value("${application.security.password.min-strength:10}")
+    private int minPasswordStrength;
+
+    @Value("${application.security.password.max-strength:14}")
+    private int maxPasswordStrength;
+
+    // Application nodes sharing the user table; calibration is per node, so more than one needs a fixed cost
+    @Value("${application.security.password.nodes:1}")
+    private int nodes;
+
+    // 0 means one thread per available processor
+    @Value("${application.security.password.hashing-threads:0}")
+    private int hashingThreads;
+
+    @Value("${application.security.password.queue-capacity:64}")
+    private int hashingQueueCapacity;
+
+    @Value("${application.security.password.wait-timeout:5s}")
+    private Duration hashingWaitTimeout;
+
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   AuthenticationProvider authenticationProvider) throws Exception {
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .cors(Customizer.withDefaults())
@@ -56,16 +92,35 @@ public class SecurityConfiguration {
                 .sessionManagement(session -> session
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 )
-                .authenticationProvider(authenticationProvider())
-                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
+                .authenticationProvider(authenticationProvider)
+                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+                // Rate limit after JWT authentication so user and role quotas apply
+                .addFilterAfter(rateLimitingFilter, JwtAuthenticationFilter.class);
 
         return http.build();
     }
 
+    // Both filters run inside the security chain only, not again as plain servlet filters
+    @Bean
+    public FilterRegistrationBean<JwtAuthenticationFilter> jwtAuthFilterRegistration() {
+        FilterRegistrationBean<JwtAuthenticationFilter> registration = new FilterRegistrationBean<>(jwtAuthFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
+    @Bean
+    public FilterRegistrationBean<RateLimitingFilter> rateLimitingFilterRegistration() {
+        FilterRegistrationBean<RateLimitingFilter> registration = new FilterRegistrationBean<>(rateLimitingFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     @Bean
-    public AuthenticationProvider authenticationProvider() {
+    public AuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
+        // Rehash on successful login when the stored BCrypt cost differs from the current one
+        authProvider.setUserDetailsPasswordService(userDetailsService);
         return authProvider;
     }
 
@@ -75,7 +130,16 @@ public class SecurityConfiguration {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        if (passwordStrength <= 0 && nodes > 1) {
+            throw new IllegalStateException("application.security.password.strength must be set when "
+                    + "application.security.password.nodes is " + nodes + ": calibrated costs differ per node");
+        }
+        int strength = passwordStrength > 0
+                ? passwordStrength
+                : BulkheadPasswordEncoder.calibrate(targetHashTime, minPasswordStrength, maxPasswordStrength);
+        int threads = hashingThreads > 0 ? hashingThreads : Runtime.getRuntime().availableProcessors();
+        return new BulkheadPasswordEncoder(strength, threads, hashingQueueCapacity, hashingWaitTimeout,
+                meterRegistry);
     }
 }
\ No newline at end of file
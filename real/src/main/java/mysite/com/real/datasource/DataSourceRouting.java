@@ -0,0 +1,42 @@
+package mysite.com.real.datasource;
+
+import java.util.function.Supplier;
+
+// Per-thread overrides for ReadWriteRoutingDataSource: read-only transactions normally go
+// to the replica, except
+//   - inside onPrimary, for reads that must see the latest commit
+//   - for a short window after this thread used the primary in a read-write transaction,
+//     so a request reads back what it just wrote
+// Without a replica configured everything runs on the one pool and these change nothing.
+public final class DataSourceRouting {
+
+    private static final ThreadLocal<Integer> PRIMARY_SCOPES = ThreadLocal.withInitial(() -> 0);
+    private static final ThreadLocal<Long> PINNED_UNTIL = ThreadLocal.withInitial(() -> 0L);
+
+    private DataSourceRouting() {
+    }
+
+    // Read-only work in here runs on the primary. Call it outside a transaction: one that is
+    // already running keeps the connection it started with.
+    public static <T> T onPrimary(Supplier<T> action) {
+        PRIMARY_SCOPES.set(PRIMARY_SCOPES.get() + 1);
+        try {
+            return action.get();
+        } finally {
+            int depth = PRIMARY_SCOPES.get() - 1;
+            if (depth == 0) {
+                PRIMARY_SCOPES.remove();
+            } else {
+                PRIMARY_SCOPES.set(depth);
+            }
+        }
+    }
+
+    static boolean isPrimaryRequired() {
+        return PRIMARY_SCOPES.get() > 0 || System.currentTimeMillis() < PINNED_UNTIL.get();
+    }
+
+    static void pinToPrimary(long millis) {
+        PINNED_UNTIL.set(System.currentTimeMillis() + millis);
+    }
+}
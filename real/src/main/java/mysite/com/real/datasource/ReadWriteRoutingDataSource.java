@@ -0,0 +1,37 @@
+package mysite.com.real.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+// Picks the pool per connection: @Transactional(readOnly = true) work goes to the replica,
+// everything else (writes, reads outside a transaction, Flyway) to the primary.
+// Must sit behind a LazyConnectionDataSourceProxy: the transaction manager asks for the
+// connection before the read-only flag is set, the proxy defers it to the first statement.
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Target { PRIMARY, REPLICA }
+
+    private final long readYourWritesWindowMillis;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, long readYourWritesWindowMillis) {
+        this.readYourWritesWindowMillis = readYourWritesWindowMillis;
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return DataSourceRouting.isPrimaryRequired() ? Target.PRIMARY : Target.REPLICA;
+        }
+        // A read-write transaction: reads that follow on this thread may depend on it
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            DataSourceRouting.pinToPrimary(readYourWritesWindowMillis);
+        }
+        return Target.PRIMARY;
+    }
+}
@@ -0,0 +1,17 @@
+package mysite.com.real.exception;
+
+// Thrown when a bounded resource (e.g. the password hashing pool) is saturated;
+// mapped to 503 so clients back off instead of queueing on request threads
+public class ServiceBusyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
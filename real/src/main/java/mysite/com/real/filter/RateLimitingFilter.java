@@ -1,60 +1,110 @@
 package mysite.com.real.filter;
 
-import jakarta.servlet.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.RequiredArgsConstructor;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import mysite.com.real.ratelimit.dto.RateLimitDecision;
+import mysite.com.real.ratelimit.dto.RateLimitPolicy;
+import mysite.com.real.ratelimit.dto.RateLimitRule;
+import mysite.com.real.ratelimit.service.RateLimitPolicyMatcher;
+import mysite.com.real.ratelimit.service.RateLimiter;
+
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
 import java.io.IOException;
-import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+// Runs inside the security filter chain right after JwtAuthenticationFilter
+// (see SecurityConfiguration), so authenticated users are limited per account and role.
 @Component
-@RequiredArgsConstructor
-public class RateLimitingFilter implements Filter {
+public class RateLimitingFilter extends OncePerRequestFilter {
 
-    private static final int MAX_REQUESTS_PER_MINUTE = 60;
-    private static final Duration WINDOW = Duration.ofMinutes(1);
+    private final RateLimiter rateLimiter;
+    private final RateLimitPolicyMatcher policyMatcher;
+    private final MeterRegistry meterRegistry;
 
-    private final StringRedisTemplate redisTemplate;
+    // Tagged by policy name, which comes from configuration, so the tag set stays bounded
+    private final Map<String, Counter> allowedCounters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejectedCounters = new ConcurrentHashMap<>();
+
+    public RateLimitingFilter(RateLimiter rateLimiter, RateLimitPolicyMatcher policyMatcher,
+                              MeterRegistry meterRegistry) {
+        this.rateLimiter = rateLimiter;
+        this.policyMatcher = policyMatcher;
+        this.meterRegistry = meterRegistry;
+    }
 
     @Override
-    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
-            throws IOException, ServletException {
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
 
-        HttpServletRequest httpRequest = (HttpServletRequest) request;
-        HttpServletResponse httpResponse = (HttpServletResponse) response;
+    @Override
+    protected void doFilterInternal(
+        HttpServletRequest request,
+        HttpServletResponse response,
+        FilterChain filterChain
+    ) throws ServletException, IOException {
 
-        if (!httpRequest.getRequestURI().startsWith("/api/")) {
-            chain.doFilter(request, response);
-            return;
-        }
+        RateLimitPolicy policy = policyMatcher.match(request.getMethod(), request.getRequestURI());
 
         String rateLimitKey;
+        RateLimitRule rule;
         var auth = SecurityContextHolder.getContext().getAuthentication();
 
-        if (auth != null && auth.isAuthenticated() && !"anonymousUser".equals(auth.getPrincipal())) {
+        if (auth != null && auth.isAuthenticated() && !(auth instanceof AnonymousAuthenticationToken)) {
             String email = auth.getName();
-            rateLimitKey = "rate_limit:user:" + email;
+            rateLimitKey = "rate_limit:" + policy.name() + ":user:" + email;
+            List<String> roles = auth.getAuthorities().stream()
+                    .map(GrantedAuthority::getAuthority)
+                    .toList();
+            rule = policy.ruleFor(roles, true);
         } else {
-            String clientIp = httpRequest.getRemoteAddr();
-            rateLimitKey = "rate_limit:ip:" + clientIp;
+            String clientIp = request.getRemoteAddr();
+            rateLimitKey = "rate_limit:" + policy.name() + ":ip:" + clientIp;
+            rule = policy.ruleFor(List.of(), false);
         }
 
-        Long count = redisTemplate.opsForValue().increment(rateLimitKey);
+        RateLimitDecision decision = rateLimiter.tryAcquire(rateLimitKey, rule, policy.cost());
+        writeRateLimitHeaders(response, decision);
+        decisionCounter(decision.allowed() ? allowedCounters : rejectedCounters, policy.name(),
+                decision.allowed()).increment();
 
-        if (count != null && count == 1) {
-            // First request → start window
-            redisTemplate.expire(rateLimitKey, WINDOW);
-        }
-
-        if (count != null && count > MAX_REQUESTS_PER_MINUTE) {
-            httpResponse.setStatus(429);
-            httpResponse.getWriter().write("Too many requests. Try again later.");
+        if (!decision.allowed()) {
+            response.setHeader("Retry-After", Long.toString(toSeconds(decision.retryAfterMillis())));
+            response.setStatus(429);
+            response.getWriter().write("Too many requests. Try again later.");
             return;
         }
 
-        chain.doFilter(request, response);
+        filterChain.doFilter(request, response);
+    }
+
+    private Counter decisionCounter(Map<String, Counter> counters, String policy, boolean allowed) {
+        return counters.computeIfAbsent(policy, name -> Counter.builder("ratelimit.decisions")
+                .description("Rate limit decisions; outcome=rejected is a 429")
+                .tag("policy", name)
+                .tag("outcome", allowed ? "allowed" : "rejected")
+                .register(meterRegistry));
+    }
+
+    private static void writeRateLimitHeaders(HttpServletResponse response, RateLimitDecision decision) {
+        response.setHeader("X-RateLimit-Limit", Long.toString(decision.limit()));
+        response.setHeader("X-RateLimit-Remaining", Long.toString(decision.remaining()));
+        response.setHeader("X-RateLimit-Reset", Long.toString(toSeconds(decision.resetMillis())));
+    }
+
+    // Round up so clients never retry too early
+    private static long toSeconds(long millis) {
+        return (millis + 999) / 1000;
     }
 }
@@ -0,0 +1,35 @@
+package mysite.com.real.ratelimit.controller;
+
+import lombok.RequiredArgsConstructor;
+import mysite.com.real.ratelimit.service.FailoverRateLimiter;
+import mysite.com.real.ratelimit.service.RateLimiterCircuitBreaker;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Exposes the limiter's circuit breaker at /actuator/ratelimiter (ROLE_ADMIN only)
+@Component
+@Endpoint(id = "ratelimiter")
+@RequiredArgsConstructor
+public class RateLimiterEndpoint {
+
+    private final RateLimiterCircuitBreaker circuitBreaker;
+    private final FailoverRateLimiter rateLimiter;
+
+    @ReadOperation
+    public Map<String, Object> state() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("limiter", rateLimiter.getPrimaryName());
+        state.put("circuitBreaker", circuitBreaker.getState().name());
+        state.put("consecutiveFailures", circuitBreaker.getConsecutiveFailures());
+        state.put("rejectedCalls", circuitBreaker.getRejectedCalls());
+        state.put("openedAt", circuitBreaker.getOpenedAt());
+        state.put("lastFailure", circuitBreaker.getLastFailure());
+        state.put("fallbackDecisions", rateLimiter.getFallbackDecisions());
+        return state;
+    }
+}
@@ -0,0 +1,6 @@
+package mysite.com.real.ratelimit.dto;
+
+public enum RateLimitAlgorithm {
+    TOKEN_BUCKET,
+    SLIDING_WINDOW_LOG
+}
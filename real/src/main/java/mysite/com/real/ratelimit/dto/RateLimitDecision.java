@@ -0,0 +1,5 @@
+package mysite.com.real.ratelimit.dto;
+
+// Outcome of one limiter call, with everything needed for the X-RateLimit-* headers
+public record RateLimitDecision(boolean allowed, long limit, long remaining, long resetMillis, long retryAfterMillis) {
+}
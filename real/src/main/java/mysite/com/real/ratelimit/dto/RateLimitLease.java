@@ -0,0 +1,5 @@
+package mysite.com.real.ratelimit.dto;
+
+// A batch of quota handed to one node; granted is 0 when the shared bucket is too low
+public record RateLimitLease(long granted, long remaining, long resetMillis, long retryAfterMillis) {
+}
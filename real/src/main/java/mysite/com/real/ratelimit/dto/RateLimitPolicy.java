@@ -0,0 +1,40 @@
+package mysite.com.real.ratelimit.dto;
+
+import org.springframework.web.util.pattern.PathPattern;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+// A compiled policy: rules are built once per role, so per request only a map lookup is left
+public record RateLimitPolicy(
+        String name,
+        PathPattern pattern,
+        Set<String> methods,
+        int cost,
+        Map<String, RateLimitRule> roleRules,
+        RateLimitRule anonymousRule,
+        RateLimitRule defaultRule
+) {
+
+    public static final String ANONYMOUS = "ANONYMOUS";
+
+    public boolean matchesMethod(String method) {
+        return methods.isEmpty() || methods.contains(method);
+    }
+
+    // Most generous quota among the user's roles
+    public RateLimitRule ruleFor(Collection<String> roles, boolean authenticated) {
+        if (!authenticated) {
+            return anonymousRule;
+        }
+        RateLimitRule best = null;
+        for (String role : roles) {
+            RateLimitRule rule = roleRules.get(role);
+            if (rule != null && (best == null || rule.limit() > best.limit())) {
+                best = rule;
+            }
+        }
+        return best != null ? best : defaultRule;
+    }
+}
@@ -0,0 +1,7 @@
+package mysite.com.real.ratelimit.dto;
+
+import java.time.Duration;
+
+// A quota: at most `limit` cost units per `window`
+public record RateLimitRule(RateLimitAlgorithm algorithm, long limit, Duration window) {
+}
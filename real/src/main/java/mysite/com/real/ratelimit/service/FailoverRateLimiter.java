@@ -0,0 +1,53 @@
+package mysite.com.real.ratelimit.service;
+
+import lombok.extern.slf4j.Slf4j;
+import mysite.com.real.ratelimit.dto.RateLimitDecision;
+import mysite.com.real.ratelimit.dto.RateLimitRule;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Entry point for the filter: uses the Redis-backed limiter (hybrid when enabled) and
+// falls back to per-node in-memory limiting whenever Redis fails or the breaker is open.
+@Slf4j
+@Service
+@Primary
+public class FailoverRateLimiter implements RateLimiter {
+
+    private final RateLimiter primary;
+    private final LocalRateLimiter fallback;
+    private final AtomicLong fallbackDecisions = new AtomicLong();
+
+    public FailoverRateLimiter(RedisRateLimiter redisRateLimiter,
+                               ObjectProvider<HybridRateLimiter> hybridRateLimiter,
+                               LocalRateLimiter fallback) {
+        HybridRateLimiter hybrid = hybridRateLimiter.getIfAvailable();
+        this.primary = hybrid != null ? hybrid : redisRateLimiter;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public RateLimitDecision tryAcquire(String key, RateLimitRule rule, int cost) {
+        try {
+            return primary.tryAcquire(key, rule, cost);
+        } catch (RateLimiterCircuitBreaker.OpenException e) {
+            fallbackDecisions.incrementAndGet();
+            return fallback.tryAcquire(key, rule, cost);
+        } catch (RuntimeException e) {
+            log.warn("Redis rate limiter failed, using local limiter: {}", e.getMessage());
+            fallbackDecisions.incrementAndGet();
+            return fallback.tryAcquire(key, rule, cost);
+        }
+    }
+
+    public long getFallbackDecisions() {
+        return fallbackDecisions.get();
+    }
+
+    public String getPrimaryName() {
+        return primary.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,257 @@
+package mysite.com.real.ratelimit.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import mysite.com.real.ratelimit.dto.RateLimitAlgorithm;
+import mysite.com.real.ratelimit.dto.RateLimitDecision;
+import mysite.com.real.ratelimit.dto.RateLimitLease;
+import mysite.com.real.ratelimit.dto.RateLimitRule;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Two-tier limiter: each node leases batches of tokens from the shared Redis token
+// bucket and spends them locally with a CAS, so most requests never leave the JVM.
+// Leases are topped up in the background before they run out; Redis is only hit
+// synchronously when a node's lease is empty.
+//
+// Leased tokens are already taken from the shared bucket, so the cluster never admits
+// more than the limit. The error is on the other side: tokens parked on other nodes,
+// at most nodes * leaseSize = max-error * limit. Tokens a lease still holds when it
+// expires go back to the shared bucket instead of being dropped.
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "application.rate-limit.mode", havingValue = "HYBRID")
+@RequiredArgsConstructor
+public class HybridRateLimiter implements RateLimiter {
+
+    private final RedisRateLimiter redisRateLimiter;
+    private final RateLimiterCircuitBreaker circuitBreaker;
+
+    private final Map<String, LocalLease> leases = new ConcurrentHashMap<>();
+    private ExecutorService refillExecutor;
+
+    // Fraction of the limit that may sit unused in leases across the cluster
+    @Value("${application.rate-limit.hybrid.max-error:0.1}")
+    private double maxError;
+
+    // Expected number of application nodes sharing the quota
+    @Value("${application.rate-limit.nodes:1}")
+    private int nodes;
+
+    // Unused leased tokens are returned to Redis after this long so idle nodes do not hoard quota
+    @Value("${application.rate-limit.hybrid.lease-ttl:1s}")
+    private Duration leaseTtl;
+
+    static final class LocalLease {
+        final AtomicLong available = new AtomicLong();
+        final AtomicBoolean refilling = new AtomicBoolean();
+        volatile long expiresAt;
+        volatile long deniedUntil;
+        volatile long globalRemaining;
+        volatile long resetAt;
+        volatile RateLimitRule rule;
+        // Set under the lease's lock once it is evicted; tokens can no longer be added to it
+        private boolean retired;
+
+        boolean tryConsume(int cost, long now) {
+            if (now > expiresAt) {
+                return false;
+            }
+            long current;
+            do {
+                current = available.get();
+                if (current < cost) {
+                    return false;
+                }
+            } while (!available.compareAndSet(current, current - cost));
+            return true;
+        }
+
+        // Tokens left over from an expired lease were debited from Redis too, so they are kept.
+        // False if the lease was evicted meanwhile: the tokens belong in the key's current lease.
+        synchronized boolean store(RateLimitRule rule, RateLimitLease lease, long tokens, long now, long ttlMillis) {
+            if (retired) {
+                return false;
+            }
+            this.rule = rule;
+            available.addAndGet(tokens);
+            expiresAt = now + ttlMillis;
+            globalRemaining = lease.remaining();
+            resetAt = now + lease.resetMillis();
+            return true;
+        }
+
+        synchronized boolean putBack(long tokens) {
+            if (retired) {
+                return false;
+            }
+            available.addAndGet(tokens);
+            return true;
+        }
+
+        // Expired and empty with no refill in flight. Once retired it stays that way, so a
+        // store racing with eviction fails instead of filling a lease that left the map.
+        synchronized boolean retireIfIdle(long now) {
+            if (now > expiresAt && now > deniedUntil && available.get() == 0 && !refilling.get()) {
+                retired = true;
+            }
+            return retired;
+        }
+
+        // What an expired lease still holds, taken out so it can be returned to Redis
+        long drainIfExpired(long now) {
+            return now > expiresAt ? available.getAndSet(0) : 0;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        refillExecutor = Executors.newFixedThreadPool(2,
+                Thread.ofPlatform().name("rate-limit-lease-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refillExecutor.shutdownNow();
+    }
+
+    @Override
+    public RateLimitDecision tryAcquire(String key, RateLimitRule rule, int cost) {
+        // A log of individual requests cannot be leased in batches
+        if (rule.algorithm() != RateLimitAlgorithm.TOKEN_BUCKET) {
+            return redisRateLimiter.tryAcquire(key, rule, cost);
+        }
+
+        long now = System.currentTimeMillis();
+        LocalLease lease = leases.computeIfAbsent(key, k -> new LocalLease());
+        long leaseSize = leaseSize(rule);
+
+        if (lease.tryConsume(cost, now)) {
+            if (lease.available.get() <= leaseSize / 2) {
+                refillAsync(key, rule, lease, leaseSize);
+            }
+            return allowed(rule, lease, now);
+        }
+
+        // Recently denied by Redis: answer locally until the bucket can have refilled
+        if (now < lease.deniedUntil) {
+            return new RateLimitDecision(false, rule.limit(), 0,
+                    Math.max(0, lease.resetAt - now), lease.deniedUntil - now);
+        }
+
+        // Lease ran out or expired: take a new one synchronously, topping up what is left
+        long wanted = Math.max(leaseSize - lease.available.get(), cost);
+        RateLimitLease granted = redisRateLimiter.lease(key, rule, wanted, cost);
+        if (granted.granted() < cost) {
+            lease.deniedUntil = now + granted.retryAfterMillis();
+            lease.resetAt = now + granted.resetMillis();
+            return new RateLimitDecision(false, rule.limit(), 0, granted.resetMillis(), granted.retryAfterMillis());
+        }
+        lease = store(key, lease, rule, granted, granted.granted() - cost, now);
+        return allowed(rule, lease, now);
+    }
+
+    // Give back what expired leases still hold. The Redis calls run on the refill threads,
+    // not on the shared scheduler thread.
+    @Scheduled(fixedDelayString = "${application.rate-limit.hybrid.lease-ttl:1s}")
+    public void releaseExpiredLeases() {
+        if (!circuitBreaker.isCallPermitted()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        leases.forEach((key, lease) -> {
+            long unused = lease.drainIfExpired(now);
+            if (unused > 0) {
+                releaseAsync(key, lease, unused);
+            }
+        });
+    }
+
+    // Drop leases that expired with nothing left so the map tracks only active clients
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdleLeases() {
+        long now = System.currentTimeMillis();
+        leases.forEach((key, lease) -> {
+            if (lease.retireIfIdle(now)) {
+                leases.remove(key, lease);
+            }
+        });
+    }
+
+    // Store into the lease, or into the key's current one if it was evicted meanwhile
+    private LocalLease store(String key, LocalLease lease, RateLimitRule rule, RateLimitLease granted,
+                             long tokens, long now) {
+        while (!lease.store(rule, granted, tokens, now, leaseTtl.toMillis())) {
+            lease = leases.computeIfAbsent(key, k -> new LocalLease());
+        }
+        return lease;
+    }
+
+    private void refillAsync(String key, RateLimitRule rule, LocalLease lease, long leaseSize) {
+        if (!circuitBreaker.isCallPermitted() || !lease.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refillExecutor.execute(() -> {
+                try {
+                    // Top up to one lease so a node never holds more than leaseSize tokens
+                    long wanted = leaseSize - lease.available.get();
+                    if (wanted > 0) {
+                        RateLimitLease granted = redisRateLimiter.lease(key, rule, wanted, 1);
+                        if (granted.granted() > 0) {
+                            store(key, lease, rule, granted, granted.granted(), System.currentTimeMillis());
+                        }
+                    }
+                } catch (Exception e) {
+                    log.debug("Background lease refill failed for {}: {}", key, e.getMessage());
+                } finally {
+                    lease.refilling.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            lease.refilling.set(false);
+        }
+    }
+
+    private void releaseAsync(String key, LocalLease lease, long tokens) {
+        RateLimitRule rule = lease.rule;
+        try {
+            refillExecutor.execute(() -> {
+                try {
+                    redisRateLimiter.release(key, rule, tokens);
+                } catch (Exception e) {
+                    // Lost to the cluster until the bucket refills on its own
+                    log.debug("Could not return {} leased tokens for {}: {}", tokens, key, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LocalLease current = lease;
+            while (!current.putBack(tokens)) {
+                current = leases.computeIfAbsent(key, k -> new LocalLease());
+            }
+        }
+    }
+
+    private long leaseSize(RateLimitRule rule) {
+        return Math.max(1, (long) Math.floor(rule.limit() * maxError / Math.max(1, nodes)));
+    }
+
+    private static RateLimitDecision allowed(RateLimitRule rule, LocalLease lease, long now) {
+        long remaining = Math.min(rule.limit(), lease.available.get() + lease.globalRemaining);
+        return new RateLimitDecision(true, rule.limit(), remaining, Math.max(0, lease.resetAt - now), 0);
+    }
+}
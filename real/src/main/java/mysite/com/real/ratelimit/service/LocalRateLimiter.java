@@ -0,0 +1,60 @@
+package mysite.com.real.ratelimit.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import mysite.com.real.ratelimit.dto.RateLimitDecision;
+import mysite.com.real.ratelimit.dto.RateLimitRule;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+// In-memory token buckets used while Redis is unavailable. Each node enforces its
+// share of the limit (limit / nodes), so the cluster stays close to the global quota.
+@Service
+public class LocalRateLimiter implements RateLimiter {
+
+    @Value("${application.rate-limit.nodes:1}")
+    private int nodes = 1;
+
+    private final Cache<String, Bucket> buckets = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .build();
+
+    private static final class Bucket {
+        private double tokens;
+        private long updatedAt;
+
+        Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.updatedAt = now;
+        }
+    }
+
+    @Override
+    public RateLimitDecision tryAcquire(String key, RateLimitRule rule, int cost) {
+        long capacity = Math.max(1, rule.limit() / Math.max(1, nodes));
+        double ratePerMilli = (double) capacity / rule.window().toMillis();
+        long now = System.currentTimeMillis();
+        Bucket bucket = buckets.get(key, k -> new Bucket(capacity, now));
+
+        // Short, non-blocking critical section; on Java 24+ (JEP 491) a virtual thread
+        // waiting for this monitor unmounts instead of pinning its carrier
+        synchronized (bucket) {
+            bucket.tokens = Math.min(capacity, bucket.tokens + Math.max(0, now - bucket.updatedAt) * ratePerMilli);
+            bucket.updatedAt = now;
+
+            boolean allowed = bucket.tokens >= cost;
+            long retryAfter = 0;
+            if (allowed) {
+                bucket.tokens -= cost;
+            } else {
+                retryAfter = (long) Math.ceil((cost - bucket.tokens) / ratePerMilli);
+            }
+            long reset = (long) Math.ceil((capacity - bucket.tokens) / ratePerMilli);
+            return new RateLimitDecision(allowed, capacity, (long) bucket.tokens, reset, retryAfter);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package mysite.com.real.ratelimit.service;
+
+import mysite.com.real.config.RateLimitProperties;
+import mysite.com.real.ratelimit.dto.RateLimitAlgorithm;
+import mysite.com.real.ratelimit.dto.RateLimitPolicy;
+import mysite.com.real.ratelimit.dto.RateLimitRule;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// Policies are compiled once at startup:
+//   - literal patterns go into a hash map keyed by path
+//   - wildcard patterns are bucketed by their first path segment, most specific first
+// and the resolved policy per (method, path) is memoized, so the steady state is one map hit.
+@Component
+public class RateLimitPolicyMatcher {
+
+    private static final int MAX_MEMOIZED_PATHS = 10_000;
+    private static final String ANY_SEGMENT = "*";
+
+    private final Map<String, List<RateLimitPolicy>> exactPolicies = new HashMap<>();
+    private final Map<String, List<RateLimitPolicy>> wildcardPolicies = new HashMap<>();
+    private final RateLimitPolicy defaultPolicy;
+    private final Map<String, RateLimitPolicy> resolved = new ConcurrentHashMap<>();
+
+    public RateLimitPolicyMatcher(RateLimitProperties properties) {
+        PathPatternParser parser = new PathPatternParser();
+        RateLimitRule globalRule = new RateLimitRule(properties.getAlgorithm(), properties.getLimit(),
+                properties.getWindow());
+
+        for (RateLimitProperties.Policy config : properties.getPolicies()) {
+            RateLimitPolicy policy = compile(config, parser.parse(config.getPattern()), globalRule, properties);
+            if (policy.pattern().hasPatternSyntax()) {
+                wildcardPolicies.computeIfAbsent(firstSegment(config.getPattern()), k -> new ArrayList<>()).add(policy);
+            } else {
+                exactPolicies.computeIfAbsent(config.getPattern(), k -> new ArrayList<>()).add(policy);
+            }
+        }
+        wildcardPolicies.values().forEach(policies ->
+                policies.sort((a, b) -> PathPattern.SPECIFICITY_COMPARATOR.compare(a.pattern(), b.pattern())));
+
+        this.defaultPolicy = new RateLimitPolicy("default", parser.parse("/**"), Set.of(), 1, Map.of(),
+                globalRule, globalRule);
+    }
+
+    public RateLimitPolicy match(String method, String path) {
+        String key = method + ' ' + path;
+        RateLimitPolicy policy = resolved.get(key);
+        if (policy != null) {
+            return policy;
+        }
+
+        policy = lookup(method, path);
+        // Paths with ids in them could grow this without bound; start over when it gets large
+        if (resolved.size() >= MAX_MEMOIZED_PATHS) {
+            resolved.clear();
+        }
+        resolved.put(key, policy);
+        return policy;
+    }
+
+    private RateLimitPolicy lookup(String method, String path) {
+        for (RateLimitPolicy policy : exactPolicies.getOrDefault(path, List.of())) {
+            if (policy.matchesMethod(method)) {
+                return policy;
+            }
+        }
+
+        PathContainer container = PathContainer.parsePath(path);
+        for (String segment : new String[] {firstSegment(path), ANY_SEGMENT}) {
+            for (RateLimitPolicy policy : wildcardPolicies.getOrDefault(segment, List.of())) {
+                if (policy.matchesMethod(method) && policy.pattern().matches(container)) {
+                    return policy;
+                }
+            }
+        }
+        return defaultPolicy;
+    }
+
+    private static RateLimitPolicy compile(RateLimitProperties.Policy config, PathPattern pattern,
+                                           RateLimitRule globalRule, RateLimitProperties properties) {
+        RateLimitAlgorithm algorithm = config.getAlgorithm() != null ? config.getAlgorithm() : properties.getAlgorithm();
+        Duration window = config.getWindow() != null ? config.getWindow() : properties.getWindow();
+        long defaultLimit = config.getDefaultLimit() != null ? config.getDefaultLimit() : globalRule.limit();
+
+        Map<String, RateLimitRule> roleRules = new HashMap<>();
+        config.getLimits().forEach((role, limit) -> roleRules.put(role, new RateLimitRule(algorithm, limit, window)));
+        RateLimitRule defaultRule = new RateLimitRule(algorithm, defaultLimit, window);
+        RateLimitRule anonymousRule = roleRules.getOrDefault(RateLimitPolicy.ANONYMOUS, defaultRule);
+
+        Set<String> methods = config.getMethods().stream()
+                .map(String::toUpperCase)
+                .collect(Collectors.toCollection(HashSet::new));
+        return new RateLimitPolicy(config.getName() != null ? config.getName() : config.getPattern(),
+                pattern, Set.copyOf(methods), Math.max(1, config.getCost()), Map.copyOf(roleRules),
+                anonymousRule, defaultRule);
+    }
+
+    // "/api/admin/**" -> "api"; patterns whose first segment is a wildcard go under "*"
+    private static String firstSegment(String path) {
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.indexOf('/', start);
+        String segment = end < 0 ? path.substring(start) : path.substring(start, end);
+        return segment.isEmpty() || segment.contains("*") || segment.contains("{") ? ANY_SEGMENT : segment;
+    }
+}
@@ -0,0 +1,10 @@
+package mysite.com.real.ratelimit.service;
+
+import mysite.com.real.ratelimit.dto.RateLimitDecision;
+import mysite.com.real.ratelimit.dto.RateLimitRule;
+
+public interface RateLimiter {
+
+    // Try to take `cost` units of the rule's quota for this key
+    RateLimitDecision tryAcquire(String key, RateLimitRule rule, int cost);
+}
@@ -0,0 +1,129 @@
+package mysite.com.real.ratelimit.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// Guards the limiter's Redis calls. After failure-threshold consecutive failures (errors
+// or calls slower than slow-call-threshold) the breaker opens and callers fail fast.
+// Recovery is probed in the background with a PING, never on a request thread.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RateLimiterCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public static class OpenException extends RuntimeException {
+        public OpenException() {
+            super("Rate limiter circuit breaker is open", null, false, false);
+        }
+    }
+
+    private final StringRedisTemplate redisTemplate;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong rejectedCalls = new AtomicLong();
+    private volatile long openedAt;
+    private volatile String lastFailure;
+
+    @Value("${application.rate-limit.circuit-breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${application.rate-limit.circuit-breaker.slow-call-threshold:200ms}")
+    private Duration slowCallThreshold;
+
+    @Value("${application.rate-limit.circuit-breaker.open-duration:5s}")
+    private Duration openDuration;
+
+    public <T> T execute(Supplier<T> call) {
+        if (state.get() != State.CLOSED) {
+            rejectedCalls.incrementAndGet();
+            throw new OpenException();
+        }
+
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            if (System.nanoTime() - start > slowCallThreshold.toNanos()) {
+                onFailure("slow call");
+            } else {
+                consecutiveFailures.set(0);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            onFailure(e.getMessage());
+            throw e;
+        }
+    }
+
+    public boolean isCallPermitted() {
+        return state.get() == State.CLOSED;
+    }
+
+    // Background recovery: once open-duration has passed, a single PING decides
+    @Scheduled(fixedDelayString = "${application.rate-limit.circuit-breaker.probe-interval:1000}")
+    public void probe() {
+        if (state.get() != State.OPEN || System.currentTimeMillis() - openedAt < openDuration.toMillis()) {
+            return;
+        }
+        if (!state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            return;
+        }
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection -> connection.ping());
+            consecutiveFailures.set(0);
+            state.set(State.CLOSED);
+            log.info("Rate limiter circuit breaker closed, Redis is reachable again");
+        } catch (Exception e) {
+            lastFailure = e.getMessage();
+            openedAt = System.currentTimeMillis();
+            state.set(State.OPEN);
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    public long getRejectedCalls() {
+        return rejectedCalls.get();
+    }
+
+    public long getOpenedAt() {
+        return openedAt;
+    }
+
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    private void onFailure(String reason) {
+        lastFailure = reason;
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold
+                && state.compareAndSet(State.CLOSED, State.OPEN)) {
+            openedAt = System.currentTimeMillis();
+            log.warn("Rate limiter circuit breaker opened after {} failures: {}", failureThreshold, reason);
+        }
+    }
+}
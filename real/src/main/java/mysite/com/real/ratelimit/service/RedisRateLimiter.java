@@ -0,0 +1,144 @@
+package mysite.com.real.ratelimit.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import mysite.com.real.ratelimit.dto.RateLimitDecision;
+import mysite.com.real.ratelimit.dto.RateLimitLease;
+import mysite.com.real.ratelimit.dto.RateLimitRule;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Each decision is one EVALSHA: the script checks and updates the quota atomically
+// and returns the remaining quota and reset time in the same reply. Calls go through
+// the circuit breaker, which throws OpenException instead of waiting on a dead Redis.
+@Service
+public class RedisRateLimiter implements RateLimiter {
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TOKEN_BUCKET_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/rate_limit_token_bucket.lua"), List.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SLIDING_WINDOW_LOG_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/rate_limit_sliding_log.lua"), List.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> LEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/rate_limit_lease.lua"), List.class);
+
+    private static final RedisScript<Long> RELEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/rate_limit_release.lua"), Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RateLimiterCircuitBreaker circuitBreaker;
+
+    // Round trip per operation; short_circuited calls never reached Redis
+    private final CallTimers acquireTimers;
+    private final CallTimers leaseTimers;
+    private final CallTimers releaseTimers;
+
+    private record CallTimers(Timer success, Timer error, Timer shortCircuited) {
+
+        static CallTimers register(MeterRegistry registry, String operation) {
+            return new CallTimers(
+                    timer(registry, operation, "success"),
+                    timer(registry, operation, "error"),
+                    timer(registry, operation, "short_circuited"));
+        }
+
+        private static Timer timer(MeterRegistry registry, String operation, String outcome) {
+            return Timer.builder("ratelimit.redis")
+                    .description("Rate limit script calls to Redis")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .register(registry);
+        }
+    }
+
+    public RedisRateLimiter(StringRedisTemplate redisTemplate, RateLimiterCircuitBreaker circuitBreaker,
+                            MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.circuitBreaker = circuitBreaker;
+        this.acquireTimers = CallTimers.register(meterRegistry, "acquire");
+        this.leaseTimers = CallTimers.register(meterRegistry, "lease");
+        this.releaseTimers = CallTimers.register(meterRegistry, "release");
+    }
+
+    @Override
+    public RateLimitDecision tryAcquire(String key, RateLimitRule rule, int cost) {
+        String limit = Long.toString(rule.limit());
+        String window = Long.toString(rule.window().toMillis());
+
+        List<?> reply = timed(acquireTimers, () -> switch (rule.algorithm()) {
+            case TOKEN_BUCKET -> redisTemplate.execute(TOKEN_BUCKET_SCRIPT,
+                    List.of(key + ":tb"), limit, window, Integer.toString(cost));
+            case SLIDING_WINDOW_LOG -> redisTemplate.execute(SLIDING_WINDOW_LOG_SCRIPT,
+                    List.of(key + ":swl"), limit, window, Integer.toString(cost), UUID.randomUUID().toString());
+        });
+
+        if (reply == null || reply.size() < 4) {
+            throw new IllegalStateException("Unexpected rate limit script reply: " + reply);
+        }
+        return new RateLimitDecision(
+                toLong(reply.get(0)) == 1,
+                rule.limit(),
+                toLong(reply.get(1)),
+                toLong(reply.get(2)),
+                toLong(reply.get(3)));
+    }
+
+    // Take up to `wanted` tokens from the shared token bucket, but nothing if fewer than `minimum` are left
+    public RateLimitLease lease(String key, RateLimitRule rule, long wanted, long minimum) {
+        List<?> reply = timed(leaseTimers, () -> redisTemplate.execute(LEASE_SCRIPT,
+                List.of(key + ":tb"),
+                Long.toString(rule.limit()),
+                Long.toString(rule.window().toMillis()),
+                Long.toString(wanted),
+                Long.toString(minimum)));
+
+        if (reply == null || reply.size() < 4) {
+            throw new IllegalStateException("Unexpected rate limit lease reply: " + reply);
+        }
+        return new RateLimitLease(
+                toLong(reply.get(0)),
+                toLong(reply.get(1)),
+                toLong(reply.get(2)),
+                toLong(reply.get(3)));
+    }
+
+    // Put leased tokens that were never spent back into the shared token bucket
+    public void release(String key, RateLimitRule rule, long tokens) {
+        timed(releaseTimers, () -> redisTemplate.execute(RELEASE_SCRIPT,
+                List.of(key + ":tb"),
+                Long.toString(rule.limit()),
+                Long.toString(rule.window().toMillis()),
+                Long.toString(tokens)));
+    }
+
+    private <T> T timed(CallTimers timers, Supplier<T> call) {
+        long start = System.nanoTime();
+        Timer timer = timers.error();
+        try {
+            T result = circuitBreaker.execute(call);
+            timer = timers.success();
+            return result;
+        } catch (RateLimiterCircuitBreaker.OpenException e) {
+            timer = timers.shortCircuited();
+            throw e;
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : Long.parseLong(value.toString());
+    }
+}
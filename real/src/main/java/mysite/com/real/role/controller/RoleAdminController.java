@@ -0,0 +1,25 @@
+package mysite.com.real.role.controller;
+
+import lombok.RequiredArgsConstructor;
+import mysite.com.real.role.dto.RoleUserCount;
+import mysite.com.real.role.service.RoleService;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+// Admin role views; /api/admin/** already requires ROLE_ADMIN
+@RestController
+@RequestMapping("/api/admin/roles")
+@RequiredArgsConstructor
+public class RoleAdminController {
+
+    private final RoleService roleService;
+
+    // GET /api/admin/roles/user-counts : every role with the number of users holding it
+    @GetMapping("/user-counts")
+    public ResponseEntity<List<RoleUserCount>> getUserCounts() {
+        return ResponseEntity.ok(roleService.getUserCountsPerRole());
+    }
+}
@@ -0,0 +1,10 @@
+package mysite.com.real.role.dto;
+
+// Row of the grouped per-role user count query (see RoleRepository.countUsersPerRole)
+public interface RoleUserCount {
+    Long getRoleId();
+
+    String getName();
+
+    long getUserCount();
+}
@@ -2,13 +2,18 @@ package mysite.com.real.role.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import mysite.com.real.cache.service.EntityCacheInvalidator;
 import mysite.com.real.user.entity.User;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
 @Table(name = "roles")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EntityCacheInvalidator.ROLES_REGION)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -1,15 +1,42 @@
 package mysite.com.real.role.repository;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import jakarta.persistence.QueryHint;
+import mysite.com.real.cache.service.EntityCacheInvalidator;
+import mysite.com.real.role.dto.RoleUserCount;
 import mysite.com.real.role.entity.Role;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RoleRepository extends JpaRepository<Role, Long> {
+    // Query-cached with the l2cache profile
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = EntityCacheInvalidator.ROLES_BY_NAME_REGION)
+    })
     Optional<Role> findByName(String name);
     
     boolean existsByName(String name);
+
+    // Counts come straight from the join table; no user rows are read
+    @Query(value = "select count(*) from user_roles where role_id = :roleId", nativeQuery = true)
+    long countUsersByRoleId(@Param("roleId") Long roleId);
+
+    @Query(value = "select count(*) from user_roles ur join roles r on r.id = ur.role_id where r.name = :name",
+            nativeQuery = true)
+    long countUsersByRoleName(@Param("name") String name);
+
+    // Every role with its user count in one grouped query; roles without users report 0
+    @Query(value = "select r.id as roleId, r.name as name, count(ur.user_id) as userCount "
+            + "from roles r left join user_roles ur on ur.role_id = r.id "
+            + "group by r.id, r.name order by r.name", nativeQuery = true)
+    List<RoleUserCount> countUsersPerRole();
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package mysite.com.real.role.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import mysite.com.real.datasource.DataSourceRouting;
+import mysite.com.real.role.entity.Role;
+import mysite.com.real.role.repository.RoleRepository;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// Role name -> id, loaded at startup. The map is immutable and replaced as a whole, so
+// readers never lock and never see a half-built state. RoleService refreshes it after
+// each committed change and broadcasts on Redis so other nodes reload as well.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RoleRegistry {
+
+    private static final String CHANNEL = "roles:changed";
+    // A miss (role created elsewhere, broadcast not yet received) reloads at most this often
+    private static final long MISS_RELOAD_INTERVAL_MILLIS = 1_000;
+
+    private final RoleRepository roleRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private volatile Map<String, Long> idsByName = Map.of();
+    private final AtomicLong loadedAt = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        listenerContainer.addMessageListener((message, pattern) -> refresh(), new ChannelTopic(CHANNEL));
+        refresh();
+    }
+
+    // Reference to the role without a SELECT. Inside a transaction it is the managed
+    // instance (or proxy); only its id is used when the user is written.
+    public Optional<Role> getReference(String name) {
+        return getId(name).map(roleRepository::getReferenceById);
+    }
+
+    // Concurrent misses race for the reload slot; the losers answer from the current map
+    public Optional<Long> getId(String name) {
+        Long id = idsByName.get(name);
+        if (id != null) {
+            return Optional.of(id);
+        }
+        long last = loadedAt.get();
+        long now = System.currentTimeMillis();
+        if (now - last >= MISS_RELOAD_INTERVAL_MILLIS && loadedAt.compareAndSet(last, now)) {
+            refresh();
+            id = idsByName.get(name);
+        }
+        return Optional.ofNullable(id);
+    }
+
+    // From the primary: a reload follows a role change and must see it
+    public void refresh() {
+        idsByName = DataSourceRouting.onPrimary(roleRepository::findAll).stream()
+                .collect(Collectors.toUnmodifiableMap(Role::getName, Role::getId));
+        loadedAt.set(System.currentTimeMillis());
+    }
+
+    // Reload once the role change is committed and tell the other nodes to do the same
+    public void refreshAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refreshAndBroadcast();
+                }
+            });
+        } else {
+            refreshAndBroadcast();
+        }
+    }
+
+    private void refreshAndBroadcast() {
+        refresh();
+        try {
+            redisTemplate.convertAndSend(CHANNEL, "refresh");
+        } catch (Exception e) {
+            log.warn("Could not broadcast role change, other nodes reload on their next miss: {}", e.getMessage());
+        }
+    }
+}
@@ -4,8 +4,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import mysite.com.real.cache.service.EntityCacheInvalidator;
+import mysite.com.real.role.dto.RoleUserCount;
 import mysite.com.real.role.entity.Role;
 import mysite.com.real.role.repository.RoleRepository;
+import mysite.com.real.user.service.UserService;
 
 import java.util.List;
 import java.util.Optional;
@@ -17,6 +20,15 @@ public class RoleService {
     @Autowired
     private RoleRepository roleRepository;
 
+    @Autowired
+    private RoleRegistry roleRegistry;
+
+    @Autowired
+    private EntityCacheInvalidator entityCacheInvalidator;
+
+    @Autowired
+    private UserService userService;
+
     // Create a new role
     public Role createRole(String name) {
         // Check if role already exists
@@ -27,20 +39,25 @@ public class RoleService {
         Role role = new Role();
         role.setName(name);
         
-        return roleRepository.save(role);
+        Role savedRole = roleRepository.save(role);
+        onRolesChanged();
+        return savedRole;
     }
 
     // Get all roles
+    @Transactional(readOnly = true)
     public List<Role> getAllRoles() {
         return roleRepository.findAll();
     }
 
     // Get role by ID
+    @Transactional(readOnly = true)
     public Optional<Role> getRoleById(Long id) {
         return roleRepository.findById(id);
     }
 
     // Get role by name
+    @Transactional(readOnly = true)
     public Optional<Role> getRoleByName(String name) {
         return roleRepository.findByName(name);
     }
@@ -50,13 +67,20 @@ public class RoleService {
         Role role = roleRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Role not found"));
 
+        String oldName = role.getName();
         // Check if new name already exists
         if (!role.getName().equals(newName) && roleRepository.existsByName(newName)) {
             throw new RuntimeException("Role name already exists: " + newName);
         }
 
         role.setName(newName);
-        return roleRepository.save(role);
+        Role savedRole = roleRepository.save(role);
+        onRolesChanged();
+        // Issued tokens and cached principals still carry the old name
+        if (!savedRole.getName().equals(oldName)) {
+            userService.revokeRoleHolders(savedRole.getId());
+        }
+        return savedRole;
     }
 
     // Delete role
@@ -65,12 +89,10 @@ public class RoleService {
                 .orElseThrow(() -> new RuntimeException("Role not found"));
 
         // Check if role is assigned to any users
-        if (!role.getUsers().isEmpty()) {
-            throw new RuntimeException("Cannot delete role. It is assigned to " + 
-                                     role.getUsers().size() + " user(s)");
-        }
+        ensureUnassigned(role);
 
         roleRepository.deleteById(id);
+        onRolesChanged();
     }
 
     // Delete role by name
@@ -79,45 +101,71 @@ public class RoleService {
                 .orElseThrow(() -> new RuntimeException("Role not found: " + name));
 
         // Check if role is assigned to any users
-        if (!role.getUsers().isEmpty()) {
-            throw new RuntimeException("Cannot delete role. It is assigned to " + 
-                                     role.getUsers().size() + " user(s)");
-        }
+        ensureUnassigned(role);
 
         roleRepository.delete(role);
+        onRolesChanged();
+    }
+
+    private void ensureUnassigned(Role role) {
+        long assigned = roleRepository.countUsersByRoleId(role.getId());
+        if (assigned > 0) {
+            throw new RuntimeException("Cannot delete role. It is assigned to " +
+                                     assigned + " user(s)");
+        }
     }
 
     // Check if role exists by name
+    @Transactional(readOnly = true)
     public boolean existsByName(String name) {
         return roleRepository.existsByName(name);
     }
 
     // Get count of users with this role
+    @Transactional(readOnly = true)
     public int getUserCountForRole(Long roleId) {
-        Role role = roleRepository.findById(roleId)
-                .orElseThrow(() -> new RuntimeException("Role not found"));
-        
-        return role.getUsers().size();
+        if (!roleRepository.existsById(roleId)) {
+            throw new RuntimeException("Role not found");
+        }
+        return Math.toIntExact(roleRepository.countUsersByRoleId(roleId));
     }
 
     // Get count of users with this role by name
+    @Transactional(readOnly = true)
     public int getUserCountForRole(String roleName) {
-        Role role = roleRepository.findByName(roleName)
-                .orElseThrow(() -> new RuntimeException("Role not found: " + roleName));
-        
-        return role.getUsers().size();
+        if (!roleRepository.existsByName(roleName)) {
+            throw new RuntimeException("Role not found: " + roleName);
+        }
+        return Math.toIntExact(roleRepository.countUsersByRoleName(roleName));
+    }
+
+    // User count of every role in one query, for dashboards
+    @Transactional(readOnly = true)
+    public List<RoleUserCount> getUserCountsPerRole() {
+        return roleRepository.countUsersPerRole();
     }
 
     // Initialize default roles (useful for app startup)
     public void initializeDefaultRoles() {
         String[] defaultRoles = {"ROLE_USER", "ROLE_ADMIN", "ROLE_MODERATOR"};
         
+        boolean created = false;
         for (String roleName : defaultRoles) {
             if (!roleRepository.existsByName(roleName)) {
                 Role role = new Role();
                 role.setName(roleName);
                 roleRepository.save(role);
+                created = true;
             }
         }
+        if (created) {
+            onRolesChanged();
+        }
+    }
+
+    // Reload the name -> id registry and drop cached roles, here and on the other nodes
+    private void onRolesChanged() {
+        roleRegistry.refreshAfterCommit();
+        entityCacheInvalidator.evictRolesAfterCommit();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,76 @@
+package mysite.com.real.user.controller;
+
+import lombok.RequiredArgsConstructor;
+import mysite.com.real.user.dto.UserFileFormat;
+import mysite.com.real.user.dto.UserImportReport;
+import mysite.com.real.user.dto.UserPage;
+import mysite.com.real.user.service.UserExportService;
+import mysite.com.real.user.service.UserImportService;
+import mysite.com.real.user.service.UserService;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+// Admin listing; /api/admin/** already requires ROLE_ADMIN
+@RestController
+@RequestMapping("/api/admin/users")
+@RequiredArgsConstructor
+public class UserAdminController {
+
+    private final UserService userService;
+    private final UserImportService userImportService;
+    private final UserExportService userExportService;
+
+    // GET /api/admin/users?after=<last id of previous page>&size=50&active=true
+    @GetMapping
+    public ResponseEntity<UserPage> listUsers(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(defaultValue = "false") boolean active
+    ) {
+        UserPage page = active
+                ? userService.getActiveUsers(after, size)
+                : userService.getUsers(after, size);
+        return ResponseEntity.ok(page);
+    }
+
+    // POST /api/admin/users/import with an NDJSON or CSV body (CSV needs a header row:
+    // email,firstName,lastName,password,phone,roles; roles separated by '|').
+    // The body is streamed, never held in memory as a whole.
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "text/csv"})
+    public ResponseEntity<UserImportReport> importUsers(
+            @RequestHeader("Content-Type") MediaType contentType,
+            InputStream body
+    ) throws IOException {
+        UserFileFormat format = contentType.isCompatibleWith(UserFileFormat.CSV.getMediaType())
+                ? UserFileFormat.CSV
+                : UserFileFormat.NDJSON;
+        return ResponseEntity.ok(userImportService.importUsers(body, format));
+    }
+
+    // GET /api/admin/users/export?format=ndjson|csv
+    // Written on an async thread while rows are read, so the response starts immediately
+    // and the whole table is never held in memory (see UserExportService)
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestParam(defaultValue = "ndjson") String format
+    ) {
+        UserFileFormat fileFormat = UserFileFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        StreamingResponseBody body = output -> userExportService.export(output, fileFormat);
+        return ResponseEntity.ok()
+                .contentType(fileFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("users." + fileFormat.getExtension())
+                        .build()
+                        .toString())
+                .body(body);
+    }
+}
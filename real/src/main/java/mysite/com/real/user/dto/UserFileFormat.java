@@ -0,0 +1,17 @@
+package mysite.com.real.user.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import org.springframework.http.MediaType;
+
+// File formats for bulk import and export: one record per line either way
+@Getter
+@RequiredArgsConstructor
+public enum UserFileFormat {
+    NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson"),
+    CSV(MediaType.parseMediaType("text/csv"), "csv");
+
+    private final MediaType mediaType;
+    private final String extension;
+}
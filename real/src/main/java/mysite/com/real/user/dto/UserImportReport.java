@@ -0,0 +1,10 @@
+package mysite.com.real.user.dto;
+
+import java.util.List;
+
+// Outcome of a bulk import; line numbers refer to the uploaded file
+public record UserImportReport(int total, int imported, int failed, List<RowError> errors) {
+
+    public record RowError(int line, String email, String message) {
+    }
+}
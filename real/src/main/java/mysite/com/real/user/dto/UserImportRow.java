@@ -0,0 +1,14 @@
+package mysite.com.real.user.dto;
+
+import java.util.List;
+
+// One account in a bulk import (an NDJSON line or a CSV record)
+public record UserImportRow(
+        String email,
+        String firstName,
+        String lastName,
+        String password,
+        String phone,
+        List<String> roles
+) {
+}
@@ -0,0 +1,7 @@
+package mysite.com.real.user.dto;
+
+import java.util.List;
+
+// One keyset page; pass nextCursor as ?after= to get the next one, null means last page
+public record UserPage(List<UserSummary> items, Long nextCursor) {
+}
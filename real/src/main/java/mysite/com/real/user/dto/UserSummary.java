@@ -0,0 +1,35 @@
+package mysite.com.real.user.dto;
+
+import mysite.com.real.role.entity.Role;
+import mysite.com.real.user.entity.User;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Listing view of a user; never exposes the password hash
+public record UserSummary(
+        Long id,
+        String email,
+        String firstName,
+        String lastName,
+        String phone,
+        boolean active,
+        LocalDateTime createdAt,
+        List<String> roles,
+        // Optimistic lock version; send it back as expectedVersion on admin edits
+        long version
+) {
+
+    public static UserSummary of(User user) {
+        return new UserSummary(
+                user.getId(),
+                user.getEmail(),
+                user.getFirstName(),
+                user.getLastName(),
+                user.getPhone(),
+                user.isActive(),
+                user.getCreatedAt(),
+                user.getRoles().stream().map(Role::getName).sorted().toList(),
+                user.getVersion());
+    }
+}
@@ -0,0 +1,13 @@
+package mysite.com.real.user.dto;
+
+// Just enough of a user for targeted updates: the optimistic lock version to check and
+// the email/security version to publish afterwards (see UserRepository.findVersionsById)
+public interface UserVersions {
+    Long getId();
+
+    String getEmail();
+
+    long getSecurityVersion();
+
+    long getVersion();
+}
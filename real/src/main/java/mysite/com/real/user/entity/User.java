@@ -2,7 +2,10 @@ package mysite.com.real.user.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import mysite.com.real.cache.service.EntityCacheInvalidator;
 import mysite.com.real.role.entity.Role;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
@@ -10,6 +13,9 @@ import java.util.Set;
 
 @Entity
 @Table(name = "users")
+// Second-level cached when the l2cache profile is active; inert otherwise
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EntityCacheInvalidator.USERS_REGION)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -45,8 +51,22 @@ public class User {
     private LocalDateTime updatedAt;
 
     private String name;
+
+    // Bumped whenever roles, password or active state change; tokens carrying an older value are rejected
+    @Column(name="security_version", nullable = false)
+    @Builder.Default
+    private long securityVersion = 0L;
+
+    // Optimistic lock: every write, including the targeted updates in UserRepository,
+    // increments it, so an admin edit based on a stale read fails instead of overwriting
+    @Version
+    @Column(nullable = false)
+    @Builder.Default
+    private long version = 0L;
     
-    @ManyToMany(fetch = FetchType.EAGER)
+    // Lazy: queries that need roles fetch them explicitly (see UserRepository entity graphs)
+    @ManyToMany(fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EntityCacheInvalidator.USER_ROLES_REGION)
     @JoinTable(
         name = "user_roles",
         joinColumns = @JoinColumn(name = "user_id"),
@@ -1,16 +1,154 @@
 package mysite.com.real.user.repository;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import mysite.com.real.cache.service.EntityCacheInvalidator;
+import mysite.com.real.user.dto.UserVersions;
 import mysite.com.real.user.entity.User;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+    // Login and token paths always need the roles: one select with a join.
+    // With the l2cache profile the result (the id) is query-cached and the user and its
+    // roles come from the entity and collection regions.
+    // Read-only so that, called outside a transaction, it goes to the replica; declared query
+    // methods get no repository transaction otherwise. Wrap it in onPrimary for the primary.
+    @Transactional(readOnly = true)
+    @EntityGraph(attributePaths = "roles")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = EntityCacheInvalidator.USERS_BY_EMAIL_REGION)
+    })
     Optional<User> findByEmail(String email);
+
+    @EntityGraph(attributePaths = "roles")
+    Optional<User> findWithRolesById(Long id);
     
     boolean existsByEmail(String email);
     Optional<User> findByEmailAndIsActiveTrue(String email);
+
+    // Keyset pages: ids only, so LIMIT is applied by the database and the scan starts at the cursor
+    @Query("select u.id from User u where u.id > :afterId order by u.id")
+    List<Long> findIdsAfter(@Param("afterId") long afterId, Limit limit);
+
+    @Query("select u.id from User u where u.id > :afterId and u.isActive = true order by u.id")
+    List<Long> findActiveIdsAfter(@Param("afterId") long afterId, Limit limit);
+
+    // Second step of a page: the users with their roles in one statement
+    @Query("select distinct u from User u left join fetch u.roles where u.id in :ids order by u.id")
+    List<User> findAllWithRolesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Transactional(readOnly = true)
+    @Query("select u.securityVersion from User u where u.email = :email")
+    Optional<Long> findSecurityVersionByEmail(@Param("email") String email);
+
+    // Rehash only: same password, new cost, so the security version stays as is.
+    // The lock version still moves so an admin edit loaded before it cannot write the old hash back.
+    @Transactional
+    @Modifying
+    @Query("update User u set u.passwordHash = :passwordHash, u.version = u.version + 1 where u.email = :email")
+    int updatePasswordHash(@Param("email") String email, @Param("passwordHash") String passwordHash);
+
+    // Targeted updates. Each writes only the columns it changes and bumps the security
+    // version (old tokens stop working) and the optimistic lock version in the same
+    // statement. Single-user variants match on the version the caller read, so 0 rows
+    // means someone else changed the user first.
+
+    @Query("select u.id as id, u.email as email, u.securityVersion as securityVersion, u.version as version "
+            + "from User u where u.id = :id")
+    Optional<UserVersions> findVersionsById(@Param("id") Long id);
+
+    @Modifying
+    @Query("update User u set u.isActive = :active, u.securityVersion = u.securityVersion + 1, "
+            + "u.version = u.version + 1, u.updatedAt = local datetime where u.id = :id and u.version = :version")
+    int updateActive(@Param("id") Long id, @Param("active") boolean active, @Param("version") long version);
+
+    @Modifying
+    @Query("update User u set u.passwordHash = :passwordHash, u.securityVersion = u.securityVersion + 1, "
+            + "u.version = u.version + 1, u.updatedAt = local datetime where u.id = :id and u.version = :version")
+    int updatePassword(@Param("id") Long id, @Param("passwordHash") String passwordHash,
+                       @Param("version") long version);
+
+    // After a user_roles change
+    @Modifying
+    @Query("update User u set u.securityVersion = u.securityVersion + 1, u.version = u.version + 1, "
+            + "u.updatedAt = local datetime where u.id = :id and u.version = :version")
+    int bumpVersions(@Param("id") Long id, @Param("version") long version);
+
+    // Row-level role changes; the existence check keeps assignment idempotent. The native
+    // spaces hint tells Hibernate only user_roles changed, otherwise a native write would
+    // clear every second-level cache region.
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "user_roles"))
+    @Query(nativeQuery = true, value = "insert into user_roles (user_id, role_id) select :userId, :roleId from dual "
+            + "where not exists (select 1 from user_roles where user_id = :userId and role_id = :roleId)")
+    int insertRole(@Param("userId") Long userId, @Param("roleId") Long roleId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "user_roles"))
+    @Query(nativeQuery = true, value = "delete from user_roles where user_id = :userId and role_id = :roleId")
+    int deleteRole(@Param("userId") Long userId, @Param("roleId") Long roleId);
+
+    // Batch variants: lock the users that will actually change, then change them all in one
+    // statement. The lock keeps the security versions read here exact for publishing.
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u.id as id, u.email as email, u.securityVersion as securityVersion, u.version as version "
+            + "from User u where u.id in :ids and u.isActive <> :active")
+    List<UserVersions> lockVersionsToSetActive(@Param("ids") Collection<Long> ids, @Param("active") boolean active);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u.id as id, u.email as email, u.securityVersion as securityVersion, u.version as version "
+            + "from User u where u.id in :ids "
+            + "and not exists (select 1 from User x join x.roles r where x.id = u.id and r.id = :roleId)")
+    List<UserVersions> lockVersionsWithoutRole(@Param("ids") Collection<Long> ids, @Param("roleId") Long roleId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u.id as id, u.email as email, u.securityVersion as securityVersion, u.version as version "
+            + "from User u where u.id in :ids "
+            + "and exists (select 1 from User x join x.roles r where x.id = u.id and r.id = :roleId)")
+    List<UserVersions> lockVersionsWithRole(@Param("ids") Collection<Long> ids, @Param("roleId") Long roleId);
+
+    // Every holder of a role, e.g. when it is renamed
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u.id as id, u.email as email, u.securityVersion as securityVersion, u.version as version "
+            + "from User u where exists (select 1 from User x join x.roles r where x.id = u.id and r.id = :roleId)")
+    List<UserVersions> lockVersionsOfRoleHolders(@Param("roleId") Long roleId);
+
+    @Modifying
+    @Query("update User u set u.isActive = :active, u.securityVersion = u.securityVersion + 1, "
+            + "u.version = u.version + 1, u.updatedAt = local datetime where u.id in :ids")
+    int updateActiveByIdIn(@Param("ids") Collection<Long> ids, @Param("active") boolean active);
+
+    @Modifying
+    @Query("update User u set u.securityVersion = u.securityVersion + 1, u.version = u.version + 1, "
+            + "u.updatedAt = local datetime where u.id in :ids")
+    int bumpVersionsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "user_roles"))
+    @Query(nativeQuery = true, value = "insert into user_roles (user_id, role_id) "
+            + "select u.id, :roleId from users u where u.id in (:userIds)")
+    int insertRoleForUsers(@Param("userIds") Collection<Long> userIds, @Param("roleId") Long roleId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "user_roles"))
+    @Query(nativeQuery = true, value = "delete from user_roles where role_id = :roleId and user_id in (:userIds)")
+    int deleteRoleForUsers(@Param("userIds") Collection<Long> userIds, @Param("roleId") Long roleId);
 }
@@ -0,0 +1,187 @@
+package mysite.com.real.user.service;
+
+import lombok.extern.slf4j.Slf4j;
+import mysite.com.real.user.dto.UserFileFormat;
+import mysite.com.real.user.dto.UserSummary;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.ObjectMapper;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+// Full user export streamed from a forward-only result set straight to the output.
+// Only the current user is held in memory, so memory use does not grow with the table.
+// Writes block while the client is slow to read, which in turn stops rows being read off
+// the connection: it is held for the whole export, but nothing piles up on the heap.
+@Slf4j
+@Service
+public class UserExportService {
+
+    // One row per (user, role); rows of a user are adjacent because of the ORDER BY.
+    // Ordering by the primary key alone lets MySQL walk the clustered index without a filesort.
+    private static final String EXPORT_SQL = "select u.id, u.email, u.first_name, u.last_name, u.phone, "
+            + "u.is_active, u.created_at, u.version, r.name as role_name "
+            + "from users u "
+            + "left join user_roles ur on ur.user_id = u.id "
+            + "left join roles r on r.id = ur.role_id "
+            + "order by u.id";
+
+    private static final String CSV_HEADER = "id,email,firstName,lastName,phone,active,createdAt,roles,version";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int flushEveryRows;
+
+    public UserExportService(
+            DataSource dataSource,
+            ObjectMapper objectMapper,
+            @Value("${application.user-export.fetch-size:1000}") int fetchSize,
+            @Value("${application.user-export.flush-every-rows:1000}") int flushEveryRows
+    ) {
+        // Own template so the fetch size only applies to this query. With Integer.MIN_VALUE
+        // MySQL Connector/J streams rows as they arrive; the connection can run nothing else
+        // until the result set is closed, which the read-only transaction guarantees.
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.objectMapper = objectMapper;
+        this.flushEveryRows = flushEveryRows;
+    }
+
+    // Returns the number of users written. The stream is flushed, not closed.
+    // Read-only, so with a replica configured the whole export runs there.
+    @Transactional(readOnly = true)
+    public long export(OutputStream output, UserFileFormat format) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 64 * 1024);
+        if (format == UserFileFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        ExportHandler handler = new ExportHandler(writer, format);
+        try {
+            jdbcTemplate.query(EXPORT_SQL, handler);
+            handler.finish();
+        } catch (UncheckedIOException e) {
+            // Client went away; closing the result set releases the connection (a streaming
+            // MySQL result set is read to the end and discarded first, nothing is written)
+            log.debug("User export aborted after {} rows: {}", handler.written, e.getMessage());
+            throw e.getCause();
+        }
+        writer.flush();
+        return handler.written;
+    }
+
+    // Folds the (user, role) rows into one record per user
+    private final class ExportHandler implements RowCallbackHandler {
+
+        private final Writer writer;
+        private final UserFileFormat format;
+        private UserSummary current;
+        private List<String> roles;
+        private long written;
+
+        private ExportHandler(Writer writer, UserFileFormat format) {
+            this.writer = writer;
+            this.format = format;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long id = rs.getLong("id");
+            if (current == null || current.id() != id) {
+                finish();
+                Timestamp createdAt = rs.getTimestamp("created_at");
+                roles = new ArrayList<>(2);
+                current = new UserSummary(
+                        id,
+                        rs.getString("email"),
+                        rs.getString("first_name"),
+                        rs.getString("last_name"),
+                        rs.getString("phone"),
+                        rs.getBoolean("is_active"),
+                        createdAt == null ? null : createdAt.toLocalDateTime(),
+                        roles,
+                        rs.getLong("version"));
+            }
+            String role = rs.getString("role_name");
+            if (role != null) {
+                roles.add(role);
+            }
+        }
+
+        private void finish() {
+            if (current == null) {
+                return;
+            }
+            roles.sort(null);
+            try {
+                if (format == UserFileFormat.CSV) {
+                    writeCsv(writer, current);
+                } else {
+                    writer.write(objectMapper.writeValueAsString(current));
+                }
+                writer.write('\n');
+                // Push to the client regularly so it sees progress and a slow reader
+                // applies backpressure here rather than in a growing buffer
+                if (++written % flushEveryRows == 0) {
+                    writer.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            current = null;
+        }
+    }
+
+    private static void writeCsv(Writer writer, UserSummary user) throws IOException {
+        writer.write(Long.toString(user.id()));
+        writer.write(',');
+        writeCsvField(writer, user.email());
+        writer.write(',');
+        writeCsvField(writer, user.firstName());
+        writer.write(',');
+        writeCsvField(writer, user.lastName());
+        writer.write(',');
+        writeCsvField(writer, user.phone());
+        writer.write(',');
+        writer.write(Boolean.toString(user.active()));
+        writer.write(',');
+        writeCsvField(writer, user.createdAt() == null ? null : user.createdAt().toString());
+        writer.write(',');
+        writeCsvField(writer, String.join("|", user.roles()));
+        writer.write(',');
+        writer.write(Long.toString(user.version()));
+    }
+
+    // RFC 4180 quoting, same format UserImportService reads
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
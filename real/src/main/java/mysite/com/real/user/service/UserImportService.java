@@ -0,0 +1,375 @@
+package mysite.com.real.user.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import mysite.com.real.auth.service.BulkheadPasswordEncoder;
+import mysite.com.real.cache.service.EntityCacheInvalidator;
+import mysite.com.real.role.service.RoleRegistry;
+import mysite.com.real.user.dto.UserFileFormat;
+import mysite.com.real.user.dto.UserImportReport;
+import mysite.com.real.user.dto.UserImportRow;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Bulk account import. The input is streamed and processed in chunks; per chunk:
+//   1. one "email in (...)" query finds accounts that already exist
+//   2. passwords are hashed in parallel on a bounded pool of its own, so an import
+//      never competes with logins for the login hashing pool
+//   3. users and user_roles rows are written with JDBC batches in one transaction
+// Each chunk commits on its own; a failed row is reported and does not stop the import.
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UserImportService {
+
+    private static final String DEFAULT_ROLE = "ROLE_USER";
+
+    private static final String INSERT_USER = "insert into users (first_name, last_name, name, email, password_hash, "
+            + "phone, is_active, security_version, version, created_at, updated_at) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_USER_ROLE = "insert into user_roles (user_id, role_id) values (?, ?)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final RoleRegistry roleRegistry;
+    private final ObjectMapper objectMapper;
+    private final EntityCacheInvalidator entityCacheInvalidator;
+
+    @Value("${application.user-import.chunk-size:500}")
+    private int chunkSize;
+
+    // 0 means half the cores, leaving the rest for request traffic
+    @Value("${application.user-import.hashing-threads:0}")
+    private int hashingThreads;
+
+    private ThreadPoolExecutor hashingPool;
+    private PasswordEncoder hasher;
+
+    private record PendingRow(int line, UserImportRow row) {
+    }
+
+    private record PreparedRow(int line, UserImportRow row, List<Long> roleIds, String passwordHash) {
+    }
+
+    @PostConstruct
+    void init() {
+        int threads = hashingThreads > 0 ? hashingThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        // Queue holds one chunk; the caller waits on the chunk, so the pool never runs ahead of the input.
+        // With concurrent imports a full queue makes the submitter wait for room: running the hash
+        // itself would put BCrypt on a request thread, outside this pool's limit.
+        hashingPool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, chunkSize)),
+                Thread.ofPlatform().name("user-import-hash-", 0).daemon().factory(),
+                (task, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("User import hashing pool is shut down");
+                    }
+                    try {
+                        executor.getQueue().put(task);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted waiting for the hashing pool", e);
+                    }
+                });
+        // Hash directly at the configured cost instead of going through the login bulkhead
+        hasher = passwordEncoder instanceof BulkheadPasswordEncoder bulkhead
+                ? new BCryptPasswordEncoder(bulkhead.getStrength())
+                : passwordEncoder;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hashingPool.shutdownNow();
+    }
+
+    public UserImportReport importUsers(InputStream input, UserFileFormat format) throws IOException {
+        List<UserImportReport.RowError> errors = new ArrayList<>();
+        // Emails seen so far in this file, lower-cased; duplicates inside the upload are rejected
+        Set<String> seen = new HashSet<>();
+        List<PendingRow> chunk = new ArrayList<>(chunkSize);
+        List<String> header = null;
+        int total = 0;
+        int imported = 0;
+        int lineNumber = 0;
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (format == UserFileFormat.CSV && header == null) {
+                header = parseCsvLine(line).stream().map(String::trim).toList();
+                continue;
+            }
+            total++;
+
+            UserImportRow row;
+            try {
+                row = format == UserFileFormat.NDJSON
+                        ? objectMapper.readValue(line, UserImportRow.class)
+                        : csvRow(header, parseCsvLine(line));
+            } catch (RuntimeException e) {
+                errors.add(new UserImportReport.RowError(lineNumber, null, "Malformed row: " + e.getMessage()));
+                continue;
+            }
+
+            String problem = validate(row);
+            if (problem != null) {
+                errors.add(new UserImportReport.RowError(lineNumber, row.email(), problem));
+                continue;
+            }
+            if (!seen.add(emailKey(row.email()))) {
+                errors.add(new UserImportReport.RowError(lineNumber, row.email(), "Duplicate email in file"));
+                continue;
+            }
+
+            chunk.add(new PendingRow(lineNumber, row));
+            if (chunk.size() >= chunkSize) {
+                imported += importChunk(chunk, errors);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            imported += importChunk(chunk, errors);
+        }
+
+        log.info("User import finished: {} rows, {} imported, {} failed", total, imported, errors.size());
+        return new UserImportReport(total, imported, errors.size(), errors);
+    }
+
+    private int importChunk(List<PendingRow> chunk, List<UserImportReport.RowError> errors) {
+        // Set-based duplicate check against the database. Compared lower-cased, as the unique
+        // index does (MySQL's default collation ignores case).
+        Set<String> existing = new HashSet<>();
+        jdbcTemplate.query("select email from users where email in (:emails)",
+                Map.of("emails", chunk.stream().map(pending -> pending.row().email()).toList()),
+                rs -> {
+                    existing.add(emailKey(rs.getString("email")));
+                });
+
+        List<PendingRow> accepted = new ArrayList<>(chunk.size());
+        List<List<Long>> roleIds = new ArrayList<>(chunk.size());
+        for (PendingRow pending : chunk) {
+            if (existing.contains(emailKey(pending.row().email()))) {
+                errors.add(new UserImportReport.RowError(pending.line(), pending.row().email(),
+                        "Email already registered"));
+                continue;
+            }
+            List<String> roleNames = pending.row().roles() == null || pending.row().roles().isEmpty()
+                    ? List.of(DEFAULT_ROLE)
+                    : pending.row().roles();
+            List<Long> ids = new ArrayList<>(roleNames.size());
+            String unknownRole = null;
+            for (String roleName : roleNames) {
+                Optional<Long> id = roleRegistry.getId(roleName.trim());
+                if (id.isEmpty()) {
+                    unknownRole = roleName;
+                    break;
+                }
+                ids.add(id.get());
+            }
+            if (unknownRole != null) {
+                errors.add(new UserImportReport.RowError(pending.line(), pending.row().email(),
+                        "Role not found: " + unknownRole));
+                continue;
+            }
+            accepted.add(pending);
+            roleIds.add(ids);
+        }
+
+        // Hash the whole chunk in parallel, then collect in order
+        List<Future<String>> hashes = new ArrayList<>(accepted.size());
+        for (PendingRow pending : accepted) {
+            hashes.add(hashingPool.submit(() -> hasher.encode(pending.row().password())));
+        }
+        List<PreparedRow> prepared = new ArrayList<>(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            PendingRow pending = accepted.get(i);
+            try {
+                prepared.add(new PreparedRow(pending.line(), pending.row(), roleIds.get(i), hashes.get(i).get()));
+            } catch (ExecutionException e) {
+                errors.add(new UserImportReport.RowError(pending.line(), pending.row().email(),
+                        "Password hashing failed"));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("User import interrupted", e);
+            }
+        }
+
+        return write(prepared, errors);
+    }
+
+    // One transaction per chunk. If it fails (e.g. an email registered concurrently),
+    // retry row by row so only the offending rows are reported.
+    private int write(List<PreparedRow> rows, List<UserImportReport.RowError> errors) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                insertBatch(rows);
+                // Plain JDBC: Hibernate does not know these rows exist
+                entityCacheInvalidator.evictUserQueriesAfterCommit();
+            });
+            return rows.size();
+        } catch (DataAccessException e) {
+            if (rows.size() == 1) {
+                PreparedRow row = rows.getFirst();
+                errors.add(new UserImportReport.RowError(row.line(), row.row().email(),
+                        "Insert failed: " + e.getMostSpecificCause().getMessage()));
+                return 0;
+            }
+            log.debug("Import batch failed, retrying {} rows one by one: {}", rows.size(), e.getMessage());
+            int written = 0;
+            for (PreparedRow row : rows) {
+                written += write(List.of(row), errors);
+            }
+            return written;
+        }
+    }
+
+    private void insertBatch(List<PreparedRow> rows) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.getJdbcTemplate().batchUpdate(INSERT_USER, rows, rows.size(), (ps, prepared) -> {
+            UserImportRow row = prepared.row();
+            ps.setString(1, row.firstName());
+            ps.setString(2, row.lastName());
+            ps.setString(3, row.firstName() + " " + row.lastName());
+            ps.setString(4, row.email());
+            ps.setString(5, prepared.passwordHash());
+            ps.setString(6, row.phone());
+            ps.setBoolean(7, true);
+            ps.setLong(8, 0L);
+            ps.setLong(9, 0L);
+            ps.setTimestamp(10, now);
+            ps.setTimestamp(11, now);
+        });
+
+        // Ids for the whole chunk in one query rather than per-row generated keys
+        Map<String, Long> ids = new HashMap<>();
+        jdbcTemplate.query("select id, email from users where email in (:emails)",
+                Map.of("emails", rows.stream().map(prepared -> prepared.row().email()).toList()),
+                rs -> {
+                    ids.put(rs.getString("email"), rs.getLong("id"));
+                });
+
+        List<long[]> links = new ArrayList<>();
+        for (PreparedRow prepared : rows) {
+            long userId = ids.get(prepared.row().email());
+            for (Long roleId : prepared.roleIds()) {
+                links.add(new long[] {userId, roleId});
+            }
+        }
+        jdbcTemplate.getJdbcTemplate().batchUpdate(INSERT_USER_ROLE, links, links.size(), (ps, link) -> {
+            ps.setLong(1, link[0]);
+            ps.setLong(2, link[1]);
+        });
+    }
+
+    private static String validate(UserImportRow row) {
+        if (isBlank(row.email()) || !row.email().contains("@")) {
+            return "Invalid email";
+        }
+        if (isBlank(row.password())) {
+            return "Password is required";
+        }
+        if (isBlank(row.firstName()) || isBlank(row.lastName())) {
+            return "First and last name are required";
+        }
+        return null;
+    }
+
+    private static String emailKey(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    // Columns are matched by header name; roles are separated by '|'
+    private static UserImportRow csvRow(List<String> header, List<String> values) {
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.size() && i < values.size(); i++) {
+            fields.put(header.get(i).toLowerCase(Locale.ROOT), values.get(i));
+        }
+        String roles = fields.get("roles");
+        return new UserImportRow(
+                trimToNull(fields.get("email")),
+                trimToNull(fields.get("firstname")),
+                trimToNull(fields.get("lastname")),
+                fields.get("password"),
+                trimToNull(fields.get("phone")),
+                isBlank(roles) ? List.of() : Arrays.stream(roles.split("\\|")).map(String::trim).toList());
+    }
+
+    private static String trimToNull(String value) {
+        return isBlank(value) ? null : value.trim();
+    }
+
+    // RFC 4180 fields on one line: comma separated, optionally quoted, "" inside quotes
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -1,15 +1,24 @@
 package mysite.com.real.user.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import mysite.com.real.auth.service.SecurityVersionService;
+import mysite.com.real.auth.service.UserDetailsNearCache;
+import mysite.com.real.cache.service.EntityCacheInvalidator;
 import mysite.com.real.role.entity.Role;
-import mysite.com.real.role.repository.RoleRepository;
+import mysite.com.real.role.service.RoleRegistry;
+import mysite.com.real.user.dto.UserPage;
+import mysite.com.real.user.dto.UserSummary;
+import mysite.com.real.user.dto.UserVersions;
 import mysite.com.real.user.entity.User;
 import mysite.com.real.user.repository.UserRepository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -19,15 +28,26 @@ import java.util.HashSet;
 @Transactional
 public class UserService {
 
+    public static final int MAX_PAGE_SIZE = 500;
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
-    private RoleRepository roleRepository;
+    private RoleRegistry roleRegistry;
 
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private SecurityVersionService securityVersionService;
+
+    @Autowired
+    private UserDetailsNearCache userDetailsCache;
+
+    @Autowired
+    private EntityCacheInvalidator entityCacheInvalidator;
+
     // Create a new user
     public User createUser(String firstName, String lastName, String email, String password, 
                           String phone, Set<String> roleNames) {
@@ -40,12 +60,12 @@ public class UserService {
         Set<Role> roles = new HashSet<>();
         if (roleNames == null || roleNames.isEmpty()) {
             // Default role if none specified
-            Role userRole = roleRepository.findByName("ROLE_USER")
+            Role userRole = roleRegistry.getReference("ROLE_USER")
                     .orElseThrow(() -> new RuntimeException("Default role not found"));
             roles.add(userRole);
         } else {
             for (String roleName : roleNames) {
-                Role role = roleRepository.findByName(roleName)
+                Role role = roleRegistry.getReference(roleName)
                         .orElseThrow(() -> new RuntimeException("Role not found: " + roleName));
                 roles.add(role);
             }
@@ -63,222 +83,304 @@ public class UserService {
                 .roles(roles)
                 .build();
 
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        entityCacheInvalidator.evictUsersAfterCommit(List.of(savedUser.getId()));
+        return savedUser;
     }
 
-    // Get all users
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
+    // Keyset page of users ordered by id, starting after afterId (null for the first page).
+    // The ids are paged in the database, then the page is loaded with its roles in one query.
+    @Transactional(readOnly = true)
+    public UserPage getUsers(Long afterId, int size) {
+        return getPage(afterId, size, false);
     }
 
-    // Get all active users
-    public List<User> getAllActiveUsers() {
-        return userRepository.findAll().stream()
-                .filter(User::isActive)
-                .toList();
+    // Same as getUsers, filtered on is_active in the query
+    @Transactional(readOnly = true)
+    public UserPage getActiveUsers(Long afterId, int size) {
+        return getPage(afterId, size, true);
     }
 
     // Get user by ID
+    @Transactional(readOnly = true)
     public Optional<User> getUserById(Long id) {
-        return userRepository.findById(id);
+        return userRepository.findWithRolesById(id);
     }
 
     // Get user by email
+    @Transactional(readOnly = true)
     public Optional<User> getUserByEmail(String email) {
         return userRepository.findByEmail(email);
     }
 
-    // Update user
+    // Update user. Changes go to the loaded entity, so Hibernate writes them with a
+    // version check and a concurrent edit makes this one fail instead of being lost.
     public User updateUser(Long id, String firstName, String lastName, String email, 
                           String phone, Set<String> roleNames) {
-        User user = userRepository.findById(id)
+        User user = userRepository.findWithRolesById(id)
                 .orElseThrow(() -> new RuntimeException("User not found"));
+        String oldEmail = user.getEmail();
 
-        // Build updated fields
-        User.UserBuilder userBuilder = User.builder()
-                .id(user.getId())
-                .passwordHash(user.getPasswordHash()) // Keep existing password
-                .isActive(user.isActive())
-                .createdAt(user.getCreatedAt())
-                .roles(user.getRoles()); // Default to existing roles
-
-        // Update first name
         if (firstName != null) {
-            userBuilder.firstName(firstName);
-        } else {
-            userBuilder.firstName(user.getFirstName());
+            user.setFirstName(firstName);
         }
-
-        // Update last name
         if (lastName != null) {
-            userBuilder.lastName(lastName);
-        } else {
-            userBuilder.lastName(user.getLastName());
+            user.setLastName(lastName);
         }
+        user.setName(user.getFirstName() + " " + user.getLastName());
 
-        // Update combined name if either first or last name changed
-        String updatedFirstName = firstName != null ? firstName : user.getFirstName();
-        String updatedLastName = lastName != null ? lastName : user.getLastName();
-        userBuilder.name(updatedFirstName + " " + updatedLastName);
-
-        // Update email
-        if (email != null && !email.equals(user.getEmail())) {
+        boolean emailChanged = email != null && !email.equals(oldEmail);
+        if (emailChanged) {
             if (userRepository.existsByEmail(email)) {
                 throw new RuntimeException("Email already exists");
             }
-            userBuilder.email(email);
-        } else {
-            userBuilder.email(user.getEmail());
+            user.setEmail(email);
         }
 
-        // Update phone
         if (phone != null) {
-            userBuilder.phone(phone);
-        } else {
-            userBuilder.phone(user.getPhone());
+            user.setPhone(phone);
         }
 
-        // Update roles
-        if (roleNames != null && !roleNames.isEmpty()) {
+        boolean rolesChanged = roleNames != null && !roleNames.isEmpty();
+        if (rolesChanged) {
             Set<Role> roles = new HashSet<>();
             for (String roleName : roleNames) {
-                Role role = roleRepository.findByName(roleName)
+                Role role = roleRegistry.getReference(roleName)
                         .orElseThrow(() -> new RuntimeException("Role not found: " + roleName));
                 roles.add(role);
             }
-            userBuilder.roles(roles);
+            user.setRoles(roles);
+        }
+
+        // Email or role changes invalidate tokens issued before them
+        if (emailChanged || rolesChanged) {
+            user.setSecurityVersion(user.getSecurityVersion() + 1);
         }
 
-        return userRepository.save(userBuilder.build());
+        User savedUser = userRepository.save(user);
+        entityCacheInvalidator.evictUsersAfterCommit(List.of(id));
+        if (emailChanged) {
+            securityVersionService.evictAfterCommit(oldEmail);
+            userDetailsCache.invalidateAfterCommit(oldEmail);
+        }
+        if (emailChanged || rolesChanged) {
+            onSecurityChange(savedUser.getEmail(), savedUser.getSecurityVersion());
+        }
+        return savedUser;
     }
 
+    // The single-user mutations below are targeted statements: a narrow select for the
+    // versions, then one UPDATE (or user_roles INSERT/DELETE plus UPDATE). Pass the version
+    // the caller last read as expectedVersion to fail if the user changed since; without it
+    // the check still covers the gap between the select and the update.
+
     // Change password
     public void changePassword(Long id, String newPassword) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        User updatedUser = User.builder()
-                .id(user.getId())
-                .firstName(user.getFirstName())
-                .lastName(user.getLastName())
-                .name(user.getName())
-                .email(user.getEmail())
-                .passwordHash(passwordEncoder.encode(newPassword))
-                .phone(user.getPhone())
-                .isActive(user.isActive())
-                .createdAt(user.getCreatedAt())
-                .roles(user.getRoles())
-                .build();
-        
-        userRepository.save(updatedUser);
+        changePassword(id, newPassword, null);
+    }
+
+    public void changePassword(Long id, String newPassword, Long expectedVersion) {
+        String passwordHash = passwordEncoder.encode(newPassword);
+        UserVersions current = readVersions(id, expectedVersion);
+        requireUpdated(userRepository.updatePassword(id, passwordHash, current.getVersion()), id);
+        onSecurityChange(current, current.getSecurityVersion() + 1);
     }
 
     // Deactivate user (soft delete)
-    public User deactivateUser(Long id) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        User updatedUser = User.builder()
-                .id(user.getId())
-                .firstName(user.getFirstName())
-                .lastName(user.getLastName())
-                .name(user.getName())
-                .email(user.getEmail())
-                .passwordHash(user.getPasswordHash())
-                .phone(user.getPhone())
-                .isActive(false)
-                .createdAt(user.getCreatedAt())
-                .roles(user.getRoles())
-                .build();
-        
-        return userRepository.save(updatedUser);
+    public void deactivateUser(Long id) {
+        setActive(id, false, null);
+    }
+
+    public void deactivateUser(Long id, Long expectedVersion) {
+        setActive(id, false, expectedVersion);
     }
 
     // Activate user
-    public User activateUser(Long id) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        User updatedUser = User.builder()
-                .id(user.getId())
-                .firstName(user.getFirstName())
-                .lastName(user.getLastName())
-                .name(user.getName())
-                .email(user.getEmail())
-                .passwordHash(user.getPasswordHash())
-                .phone(user.getPhone())
-                .isActive(true)
-                .createdAt(user.getCreatedAt())
-                .roles(user.getRoles())
-                .build();
-        
-        return userRepository.save(updatedUser);
+    public void activateUser(Long id) {
+        setActive(id, true, null);
+    }
+
+    public void activateUser(Long id, Long expectedVersion) {
+        setActive(id, true, expectedVersion);
     }
 
     // Delete user (hard delete)
     public void deleteUser(Long id) {
-        if (!userRepository.existsById(id)) {
-            throw new RuntimeException("User not found");
-        }
-        userRepository.deleteById(id);
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        userRepository.delete(user);
+        securityVersionService.evictAfterCommit(user.getEmail());
+        userDetailsCache.invalidateAfterCommit(user.getEmail());
+        entityCacheInvalidator.evictUsersAfterCommit(List.of(id));
     }
 
     // Check if email exists
+    @Transactional(readOnly = true)
     public boolean existsByEmail(String email) {
         return userRepository.existsByEmail(email);
     }
 
-    // Assign role to user
-    public User assignRoleToUser(Long userId, String roleName) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        Role role = roleRepository.findByName(roleName)
-                .orElseThrow(() -> new RuntimeException("Role not found: " + roleName));
-        
-        Set<Role> updatedRoles = new HashSet<>(user.getRoles());
-        updatedRoles.add(role);
-        
-        User updatedUser = User.builder()
-                .id(user.getId())
-                .firstName(user.getFirstName())
-                .lastName(user.getLastName())
-                .name(user.getName())
-                .email(user.getEmail())
-                .passwordHash(user.getPasswordHash())
-                .phone(user.getPhone())
-                .isActive(user.isActive())
-                .createdAt(user.getCreatedAt())
-                .roles(updatedRoles)
-                .build();
-        
-        return userRepository.save(updatedUser);
+    // Assign role to user; a role the user already has changes nothing
+    public void assignRoleToUser(Long userId, String roleName) {
+        assignRoleToUser(userId, roleName, null);
+    }
+
+    public void assignRoleToUser(Long userId, String roleName, Long expectedVersion) {
+        UserVersions current = readVersions(userId, expectedVersion);
+        Long roleId = roleId(roleName);
+        if (userRepository.insertRole(userId, roleId) > 0) {
+            // Rolls back the insert if the user changed meanwhile
+            requireUpdated(userRepository.bumpVersions(userId, current.getVersion()), userId);
+            onSecurityChange(current, current.getSecurityVersion() + 1);
+        }
+    }
+
+    // Remove role from user; a role the user does not have changes nothing
+    public void removeRoleFromUser(Long userId, String roleName) {
+        removeRoleFromUser(userId, roleName, null);
+    }
+
+    public void removeRoleFromUser(Long userId, String roleName, Long expectedVersion) {
+        UserVersions current = readVersions(userId, expectedVersion);
+        Long roleId = roleId(roleName);
+        if (userRepository.deleteRole(userId, roleId) > 0) {
+            requireUpdated(userRepository.bumpVersions(userId, current.getVersion()), userId);
+            onSecurityChange(current, current.getSecurityVersion() + 1);
+        }
     }
 
-    // Remove role from user
-    public User removeRoleFromUser(Long userId, String roleName) {
-        User user = userRepository.findById(userId)
+    // Batch variants: one locking select for the users that will change, then one statement
+    // for all of them however many ids are passed. Users already in the target state are
+    // skipped. Returns the number of users changed.
+
+    public int deactivateUsers(Collection<Long> ids) {
+        return setActive(ids, false);
+    }
+
+    public int activateUsers(Collection<Long> ids) {
+        return setActive(ids, true);
+    }
+
+    public int assignRoleToUsers(Collection<Long> userIds, String roleName) {
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        Long roleId = roleId(roleName);
+        List<UserVersions> changing = userRepository.lockVersionsWithoutRole(userIds, roleId);
+        if (changing.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = changing.stream().map(UserVersions::getId).toList();
+        userRepository.insertRoleForUsers(ids, roleId);
+        userRepository.bumpVersionsByIdIn(ids);
+        changing.forEach(user -> onSecurityChange(user.getEmail(), user.getSecurityVersion() + 1));
+        entityCacheInvalidator.evictUsersAfterCommit(ids);
+        return changing.size();
+    }
+
+    public int removeRoleFromUsers(Collection<Long> userIds, String roleName) {
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        Long roleId = roleId(roleName);
+        List<UserVersions> changing = userRepository.lockVersionsWithRole(userIds, roleId);
+        if (changing.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = changing.stream().map(UserVersions::getId).toList();
+        userRepository.deleteRoleForUsers(ids, roleId);
+        userRepository.bumpVersionsByIdIn(ids);
+        changing.forEach(user -> onSecurityChange(user.getEmail(), user.getSecurityVersion() + 1));
+        entityCacheInvalidator.evictUsersAfterCommit(ids);
+        return changing.size();
+    }
+
+    // Tokens carry role names, so a renamed role revokes the tokens of everyone holding it:
+    // their security versions are bumped in one statement. Returns the number of holders.
+    public int revokeRoleHolders(Long roleId) {
+        List<UserVersions> holders = userRepository.lockVersionsOfRoleHolders(roleId);
+        if (holders.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = holders.stream().map(UserVersions::getId).toList();
+        userRepository.bumpVersionsByIdIn(ids);
+        holders.forEach(user -> onSecurityChange(user.getEmail(), user.getSecurityVersion() + 1));
+        entityCacheInvalidator.evictUsersAfterCommit(ids);
+        return holders.size();
+    }
+
+    private void setActive(Long id, boolean active, Long expectedVersion) {
+        UserVersions current = readVersions(id, expectedVersion);
+        requireUpdated(userRepository.updateActive(id, active, current.getVersion()), id);
+        onSecurityChange(current, current.getSecurityVersion() + 1);
+    }
+
+    private int setActive(Collection<Long> ids, boolean active) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<UserVersions> changing = userRepository.lockVersionsToSetActive(ids, active);
+        if (changing.isEmpty()) {
+            return 0;
+        }
+        List<Long> changedIds = changing.stream().map(UserVersions::getId).toList();
+        userRepository.updateActiveByIdIn(changedIds, active);
+        changing.forEach(user -> onSecurityChange(user.getEmail(), user.getSecurityVersion() + 1));
+        entityCacheInvalidator.evictUsersAfterCommit(changedIds);
+        return changing.size();
+    }
+
+    private UserVersions readVersions(Long id, Long expectedVersion) {
+        UserVersions current = userRepository.findVersionsById(id)
                 .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        Role role = roleRepository.findByName(roleName)
+        if (expectedVersion != null && expectedVersion != current.getVersion()) {
+            throw new ObjectOptimisticLockingFailureException(User.class, id);
+        }
+        return current;
+    }
+
+    // A targeted update matched no row: the version moved between our read and the write
+    private static void requireUpdated(int updatedRows, Long id) {
+        if (updatedRows == 0) {
+            throw new ObjectOptimisticLockingFailureException(User.class, id);
+        }
+    }
+
+    private Long roleId(String roleName) {
+        return roleRegistry.getId(roleName)
                 .orElseThrow(() -> new RuntimeException("Role not found: " + roleName));
-        
-        Set<Role> updatedRoles = new HashSet<>(user.getRoles());
-        updatedRoles.remove(role);
-        
-        User updatedUser = User.builder()
-                .id(user.getId())
-                .firstName(user.getFirstName())
-                .lastName(user.getLastName())
-                .name(user.getName())
-                .email(user.getEmail())
-                .passwordHash(user.getPasswordHash())
-                .phone(user.getPhone())
-                .isActive(user.isActive())
-                .createdAt(user.getCreatedAt())
-                .roles(updatedRoles)
-                .build();
-        
-        return userRepository.save(updatedUser);
+    }
+
+    private UserPage getPage(Long afterId, int size, boolean activeOnly) {
+        int pageSize = Math.clamp(size, 1, MAX_PAGE_SIZE);
+        long cursor = afterId != null ? afterId : 0L;
+        // One extra id tells whether there is a next page without a COUNT
+        List<Long> ids = activeOnly
+                ? userRepository.findActiveIdsAfter(cursor, Limit.of(pageSize + 1))
+                : userRepository.findIdsAfter(cursor, Limit.of(pageSize + 1));
+        boolean hasMore = ids.size() > pageSize;
+        if (hasMore) {
+            ids = ids.subList(0, pageSize);
+        }
+        if (ids.isEmpty()) {
+            return new UserPage(List.of(), null);
+        }
+
+        List<UserSummary> items = userRepository.findAllWithRolesByIdIn(ids).stream()
+                .map(UserSummary::of)
+                .toList();
+        return new UserPage(items, hasMore ? ids.getLast() : null);
+    }
+
+    // Single-user targeted update: also evict the user from the second-level cache
+    private void onSecurityChange(UserVersions user, long securityVersion) {
+        onSecurityChange(user.getEmail(), securityVersion);
+        entityCacheInvalidator.evictUsersAfterCommit(List.of(user.getId()));
+    }
+
+    // Publish the new security version and drop cached principals for this user on every node
+    private void onSecurityChange(String email, long securityVersion) {
+        securityVersionService.publishAfterCommit(email, securityVersion);
+        userDetailsCache.invalidateAfterCommit(email);
     }
 }
\ No newline at end of file
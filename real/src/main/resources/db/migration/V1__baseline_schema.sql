@@ -0,0 +1,33 @@
+-- Baseline: the schema Hibernate generated with ddl-auto=update before migrations existed.
+-- Databases created that way are baselined at this version (spring.flyway.baseline-on-migrate)
+-- and only run what comes after it.
+
+create table roles (
+    id bigint not null auto_increment,
+    name varchar(255) not null,
+    primary key (id),
+    constraint uk_roles_name unique (name)
+);
+
+create table users (
+    id bigint not null auto_increment,
+    first_name varchar(255) not null,
+    last_name varchar(255) not null,
+    email varchar(255) not null,
+    password_hash varchar(255) not null,
+    phone varchar(255),
+    is_active bit not null,
+    created_at datetime(6) not null,
+    updated_at datetime(6),
+    name varchar(255),
+    primary key (id),
+    constraint uk_users_email unique (email)
+);
+
+create table user_roles (
+    user_id bigint not null,
+    role_id bigint not null,
+    primary key (user_id, role_id),
+    constraint fk_user_roles_user foreign key (user_id) references users (id),
+    constraint fk_user_roles_role foreign key (role_id) references roles (id)
+);
@@ -0,0 +1,4 @@
+-- Columns added to users after the baseline: the security version stamped into tokens
+-- (raised to revoke them) and the optimistic lock version. Existing rows start at 0.
+alter table users add security_version bigint not null default 0;
+alter table users add version bigint not null default 0;
@@ -0,0 +1,13 @@
+-- Indexes for the access paths in UserRepository and RoleRepository.
+-- Email and role name lookups (findByEmail, findSecurityVersionByEmail, existsByEmail,
+-- findByName) already use the unique indexes from V1.
+
+-- Active-user keyset pages: is_active = true and id > ? order by id. The equality prefix
+-- keeps the range on id in order, so no sort and no scan past inactive users.
+create index idx_users_active_id on users (is_active, id);
+
+-- Role side of the join table: per-role user counts and bulk role removal
+-- (role_id = ? [and user_id in (...)]). The primary key (user_id, role_id) only serves
+-- the user side. On MySQL this also takes over from the index the role foreign key
+-- created on its own, which the server then drops.
+create index idx_user_roles_role_user on user_roles (role_id, user_id);
@@ -0,0 +1,35 @@
+-- Lease a batch of tokens from a shared token bucket, evaluated atomically on the server.
+-- KEYS[1] = bucket hash (same layout as rate_limit_token_bucket.lua)
+-- ARGV[1] = capacity, ARGV[2] = window (ms) in which a full bucket refills,
+-- ARGV[3] = tokens wanted, ARGV[4] = minimum grant (below this nothing is granted)
+-- Returns {granted, remaining, reset (ms until full), retry after (ms)}
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local capacity = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local wanted = tonumber(ARGV[3])
+local minimum = tonumber(ARGV[4])
+local rate = capacity / window
+
+local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(state[1])
+local ts = tonumber(state[2])
+if tokens == nil or ts == nil then
+    tokens = capacity
+    ts = now
+end
+tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate)
+
+local granted = 0
+local retryAfter = 0
+if tokens >= minimum then
+    granted = math.min(math.floor(tokens), wanted)
+    tokens = tokens - granted
+else
+    retryAfter = math.ceil((minimum - tokens) / rate)
+end
+
+local reset = math.ceil((capacity - tokens) / rate)
+redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now)
+redis.call('PEXPIRE', KEYS[1], reset + 1000)
+return {granted, math.floor(tokens), reset, retryAfter}
@@ -0,0 +1,24 @@
+-- Give unused leased tokens back to a shared token bucket, evaluated atomically on the server.
+-- KEYS[1] = bucket hash (same layout as rate_limit_token_bucket.lua)
+-- ARGV[1] = capacity, ARGV[2] = window (ms) in which a full bucket refills, ARGV[3] = tokens returned
+-- Returns the tokens left in the bucket afterwards.
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local capacity = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local returned = tonumber(ARGV[3])
+local rate = capacity / window
+
+local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(state[1])
+local ts = tonumber(state[2])
+if tokens == nil or ts == nil then
+    -- The bucket expired, so it is full already
+    return capacity
+end
+tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate + returned)
+
+local reset = math.ceil((capacity - tokens) / rate)
+redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now)
+redis.call('PEXPIRE', KEYS[1], reset + 1000)
+return math.floor(tokens)
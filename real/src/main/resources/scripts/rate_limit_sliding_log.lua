@@ -0,0 +1,39 @@
+-- Sliding window log, evaluated atomically on the server.
+-- KEYS[1] = sorted set of request timestamps
+-- ARGV[1] = limit, ARGV[2] = window (ms), ARGV[3] = cost, ARGV[4] = unique request id
+-- Returns {allowed (0/1), remaining, reset (ms until the oldest entry leaves), retry after (ms)}
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local limit = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local cost = tonumber(ARGV[3])
+
+redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now - window)
+local count = redis.call('ZCARD', KEYS[1])
+
+local allowed = 0
+local retryAfter = 0
+if count + cost <= limit then
+    for i = 1, cost do
+        redis.call('ZADD', KEYS[1], now, ARGV[4] .. ':' .. i)
+    end
+    count = count + cost
+    allowed = 1
+else
+    -- Enough room frees up once the (count + cost - limit)-th oldest entry leaves the window
+    local index = count + cost - limit - 1
+    local entry = redis.call('ZRANGE', KEYS[1], index, index, 'WITHSCORES')
+    if entry[2] then
+        retryAfter = tonumber(entry[2]) + window - now
+    else
+        retryAfter = window
+    end
+end
+
+local reset = window
+local oldest = redis.call('ZRANGE', KEYS[1], 0, 0, 'WITHSCORES')
+if oldest[2] then
+    reset = tonumber(oldest[2]) + window - now
+end
+redis.call('PEXPIRE', KEYS[1], window)
+return {allowed, math.max(0, limit - count), reset, retryAfter}
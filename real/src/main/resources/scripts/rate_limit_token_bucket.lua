@@ -0,0 +1,33 @@
+-- Token bucket, evaluated atomically on the server.
+-- KEYS[1] = bucket hash
+-- ARGV[1] = capacity, ARGV[2] = window (ms) in which a full bucket refills, ARGV[3] = cost
+-- Returns {allowed (0/1), remaining, reset (ms until full), retry after (ms)}
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+local capacity = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local cost = tonumber(ARGV[3])
+local rate = capacity / window
+
+local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+local tokens = tonumber(state[1])
+local ts = tonumber(state[2])
+if tokens == nil or ts == nil then
+    tokens = capacity
+    ts = now
+end
+tokens = math.min(capacity, tokens + math.max(0, now - ts) * rate)
+
+local allowed = 0
+local retryAfter = 0
+if tokens >= cost then
+    tokens = tokens - cost
+    allowed = 1
+else
+    retryAfter = math.ceil((cost - tokens) / rate)
+end
+
+local reset = math.ceil((capacity - tokens) / rate)
+redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', now)
+redis.call('PEXPIRE', KEYS[1], reset + 1000)
+return {allowed, math.floor(tokens), reset, retryAfter}
@@ -0,0 +1,15 @@
+-- Rotate a refresh token family atomically.
+-- KEYS[1] = family key holding the current token id
+-- ARGV[1] = presented token id, ARGV[2] = new token id, ARGV[3] = ttl (ms)
+-- Returns 1 when rotated, 0 when the family is unknown or revoked, -1 when an old token was replayed.
+local current = redis.call('GET', KEYS[1])
+if not current then
+    return 0
+end
+if current ~= ARGV[1] then
+    -- A rotated-out token came back: assume theft and kill the whole family
+    redis.call('DEL', KEYS[1])
+    return -1
+end
+redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])
+return 1
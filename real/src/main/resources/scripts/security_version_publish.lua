@@ -0,0 +1,11 @@
+-- Publish a security version without ever moving it backwards.
+-- KEYS[1] = version key
+-- ARGV[1] = new version, ARGV[2] = ttl (ms)
+-- Returns the version stored afterwards: ARGV[1], or the newer one already there.
+local current = tonumber(redis.call('GET', KEYS[1]))
+local version = tonumber(ARGV[1])
+if current and current >= version then
+    return current
+end
+redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+return version
@@ -0,0 +1,121 @@
+package mysite.com.real;
+
+import mysite.com.real.support.EmbeddedRedis;
+import mysite.com.real.support.IntegrationTest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import redis.embedded.RedisServer;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The schema comes from the Flyway migrations (the context only starts if Hibernate's
+// validate accepts it) and the repository queries are answered from indexes.
+// EXPLAIN runs against H2 in MySQL mode; the plan names the index it reads in a comment,
+// e.g. /* public.uk_users_email_index_2: email = 'x' */, or tableScan when it reads none.
+class SchemaMigrationTest extends IntegrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void migrationsAreApplied() {
+        List<String> versions = jdbcTemplate.queryForList(
+                "select \"version\" from \"flyway_schema_history\" where \"success\" order by \"installed_rank\"",
+                String.class);
+
+        assertThat(versions).containsExactly("1", "2", "3");
+    }
+
+    // A database ddl-auto=update created before migrations existed: Flyway baselines it at
+    // version 1 and runs the rest, and the application starts on it with ddl-auto=validate.
+    @Test
+    void legacySchemaIsBaselinedAndUpgraded() {
+        String url = "jdbc:h2:mem:legacy-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+        JdbcTemplate legacy = new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+        new ResourceDatabasePopulator(new ClassPathResource("legacy/ddl-auto-update-schema.sql"))
+                .execute(legacy.getDataSource());
+
+        int port = EmbeddedRedis.freePort();
+        RedisServer redisServer = EmbeddedRedis.start(port);
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(RealApplication.class)
+                .profiles("test")
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + url,
+                        "--spring.data.redis.host=localhost",
+                        "--spring.data.redis.port=" + port)) {
+            assertThat(context.isActive()).isTrue();
+        } finally {
+            redisServer.stop();
+        }
+
+        assertThat(legacy.queryForList(
+                "select \"version\" from \"flyway_schema_history\" where \"success\" order by \"installed_rank\"",
+                String.class)).containsExactly("1", "2", "3");
+        assertThat(legacy.queryForMap(
+                "select security_version, version from users where email = 'legacy@example.com'"))
+                .containsEntry("security_version", 0L)
+                .containsEntry("version", 0L);
+    }
+
+    @Test
+    void accessPathIndexesHaveTheirColumnsInOrder() {
+        assertThat(indexColumns("idx_users_active_id")).containsExactly("is_active", "id");
+        assertThat(indexColumns("idx_user_roles_role_user")).containsExactly("role_id", "user_id");
+    }
+
+    // findByEmail, findSecurityVersionByEmail, existsByEmail
+    @Test
+    void emailLookupsUseTheUniqueEmailIndex() {
+        assertThat(explain("select u.id from users u where u.email = 'a@example.com'"))
+                .contains("uk_users_email");
+        assertThat(explain("select u.security_version from users u where u.email = 'a@example.com'"))
+                .contains("uk_users_email");
+    }
+
+    // findByName
+    @Test
+    void roleLookupUsesTheUniqueNameIndex() {
+        assertThat(explain("select r.id from roles r where r.name = 'ROLE_USER'")).contains("uk_roles_name");
+    }
+
+    // countUsersByRoleId, countUsersPerRole, deleteRoleForUsers: role_id leads the index
+    @Test
+    void roleSideJoinTableQueriesSeekOnRoleId() {
+        assertThat(explain("select count(*) from user_roles where role_id = 1"))
+                .doesNotContain("tablescan")
+                .contains(": role_id = 1");
+        assertThat(explain("select r.id, r.name, count(ur.user_id) from roles r "
+                + "left join user_roles ur on ur.role_id = r.id group by r.id, r.name order by r.name"))
+                .containsPattern("/\\* public\\.\\S+: role_id = r\\.id");
+        assertThat(explain("delete from user_roles where role_id = 1 and user_id in (1, 2)"))
+                .doesNotContain("tablescan");
+    }
+
+    // findActiveIdsAfter
+    @Test
+    void activeKeysetPageDoesNotScanTheTable() {
+        assertThat(explain("select u.id from users u where u.id > 0 and u.is_active = true "
+                + "order by u.id fetch first 50 rows only"))
+                .doesNotContain("tablescan");
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.queryForObject("explain " + sql, String.class).toLowerCase();
+    }
+
+    private List<String> indexColumns(String index) {
+        return jdbcTemplate.queryForList("select column_name from information_schema.index_columns "
+                + "where index_name = ? order by ordinal_position", String.class, index);
+    }
+}
@@ -0,0 +1,92 @@
+package mysite.com.real;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import mysite.com.real.auth.service.BulkheadPasswordEncoder;
+import mysite.com.real.ratelimit.dto.RateLimitAlgorithm;
+import mysite.com.real.ratelimit.dto.RateLimitRule;
+import mysite.com.real.ratelimit.service.LocalRateLimiter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs the in-process locking and hand-off code from the request path on many virtual
+// threads with JFR listening for jdk.VirtualThreadPinned. Redis and JDBC pinning is
+// checked end to end by AuthTrafficLoadTest.
+class VirtualThreadPinningTest {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final List<String> pinnedStacks = new CopyOnWriteArrayList<>();
+    private RecordingStream recording;
+
+    @BeforeEach
+    void startRecording() {
+        recording = new RecordingStream();
+        recording.enable(PINNED_EVENT).withThreshold(Duration.ZERO).withStackTrace();
+        recording.onEvent(PINNED_EVENT, event -> pinnedStacks.add(describe(event)));
+        recording.startAsync();
+    }
+
+    @AfterEach
+    void stopRecording() {
+        recording.close();
+    }
+
+    @Test
+    void contendedLocalRateLimiterDoesNotPin() throws Exception {
+        LocalRateLimiter limiter = new LocalRateLimiter();
+        RateLimitRule rule = new RateLimitRule(RateLimitAlgorithm.TOKEN_BUCKET, 1_000, Duration.ofMinutes(1));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 10_000; i++) {
+                executor.submit(() -> limiter.tryAcquire("rate_limit:api:ip:10.0.0.1", rule, 1));
+            }
+        }
+
+        assertNoPinning();
+    }
+
+    @Test
+    void waitingOnTheHashingBulkheadDoesNotPin() throws Exception {
+        try (BulkheadPasswordEncoder encoder = new BulkheadPasswordEncoder(4, 2, 1_000,
+                Duration.ofSeconds(30), new SimpleMeterRegistry());
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            String hash = encoder.encode("secret-password");
+            for (int i = 0; i < 500; i++) {
+                executor.submit(() -> encoder.matches("secret-password", hash));
+            }
+        }
+
+        assertNoPinning();
+    }
+
+    // stop() flushes the stream, so every event emitted so far has been delivered
+    private void assertNoPinning() {
+        recording.stop();
+        assertThat(pinnedStacks).as("virtual thread pinned:%n%s", String.join("\n\n", pinnedStacks)).isEmpty();
+    }
+
+    private static String describe(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return event.getDuration() + " (no stack trace)";
+        }
+        return event.getDuration() + "\n" + event.getStackTrace().getFrames().stream()
+                .limit(12)
+                .map(RecordedFrame::getMethod)
+                .map(method -> "  at " + method.getType().getName() + "." + method.getName())
+                .collect(Collectors.joining("\n"));
+    }
+}
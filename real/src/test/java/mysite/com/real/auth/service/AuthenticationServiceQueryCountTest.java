@@ -0,0 +1,60 @@
+package mysite.com.real.auth.service;
+
+import mysite.com.real.auth.dto.LoginRequest;
+import mysite.com.real.auth.dto.RegisterRequest;
+import mysite.com.real.support.IntegrationTest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Pins the number of SQL statements login and registration issue
+class AuthenticationServiceQueryCountTest extends IntegrationTest {
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Test
+    void registerOnlyInserts() {
+        String email = uniqueEmail();
+
+        statistics.clear();
+        authenticationService.register(registerRequest(email));
+
+        // insert users, insert user_roles; the role comes from the registry
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void duplicateRegistrationIsRejectedByTheUniqueConstraint() {
+        String email = uniqueEmail();
+        authenticationService.register(registerRequest(email));
+
+        assertThatThrownBy(() -> authenticationService.register(registerRequest(email)))
+                .hasMessage("Email already registered");
+    }
+
+    @Test
+    void loginLoadsTheUserOnce() {
+        String email = uniqueEmail();
+        authenticationService.register(registerRequest(email));
+
+        statistics.clear();
+        authenticationService.login(new LoginRequest(email, PASSWORD));
+
+        // select user joined with its roles
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private static RegisterRequest registerRequest(String email) {
+        return RegisterRequest.builder()
+                .firstName("Test")
+                .lastName("User")
+                .email(email)
+                .password(PASSWORD)
+                .phone("555-0100")
+                .build();
+    }
+}
@@ -0,0 +1,119 @@
+package mysite.com.real.auth.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mysite.com.real.auth.dto.ValidatedToken;
+import mysite.com.real.support.EmbeddedRedis;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Runs refresh_rotate.lua against a real Redis
+class RefreshTokenServiceTest {
+
+    private static final UserDetails USER = User.withUsername("refresh@example.com")
+            .password("")
+            .authorities("ROLE_USER")
+            .build();
+
+    private static RedisServer redis;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+    private static JwtService jwtService;
+    private static RefreshTokenService refreshTokenService;
+
+    @BeforeAll
+    static void setUp() {
+        int port = EmbeddedRedis.freePort();
+        redis = EmbeddedRedis.start(port);
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+
+        jwtService = new JwtService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(jwtService, "secretKey",
+                "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970");
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", 3_600_000L);
+        ReflectionTestUtils.setField(jwtService, "refreshExpiration", 604_800_000L);
+        ReflectionTestUtils.setField(jwtService, "stateless", false);
+        ReflectionTestUtils.invokeMethod(jwtService, "init");
+        refreshTokenService = new RefreshTokenService(redisTemplate, jwtService);
+    }
+
+    @AfterAll
+    static void tearDown() throws IOException {
+        connectionFactory.destroy();
+        redis.stop();
+    }
+
+    @Test
+    void rotationReplacesTheCurrentToken() {
+        ValidatedToken first = refreshTokenService.verify(refreshTokenService.startFamily(USER, 0));
+
+        ValidatedToken second = refreshTokenService.verify(refreshTokenService.rotate(first, USER, 0));
+
+        assertThat(familyOf(second)).isEqualTo(familyOf(first));
+        assertThat(second.claims().getId()).isNotEqualTo(first.claims().getId());
+        assertThat(redisTemplate.opsForValue().get(familyKey(first))).isEqualTo(second.claims().getId());
+    }
+
+    @Test
+    void replayedTokenRevokesTheWholeFamily() {
+        ValidatedToken first = refreshTokenService.verify(refreshTokenService.startFamily(USER, 0));
+        ValidatedToken second = refreshTokenService.verify(refreshTokenService.rotate(first, USER, 0));
+
+        // The script answers -1 and deletes the family
+        assertThatThrownBy(() -> refreshTokenService.rotate(first, USER, 0))
+                .isInstanceOf(BadCredentialsException.class)
+                .hasMessage("Refresh token reuse detected");
+        assertThat(redisTemplate.hasKey(familyKey(first))).isFalse();
+
+        // The legitimate holder's newer token is dead too
+        assertThatThrownBy(() -> refreshTokenService.rotate(second, USER, 0))
+                .isInstanceOf(BadCredentialsException.class)
+                .hasMessage("Refresh token expired or revoked");
+    }
+
+    @Test
+    void revokedFamilyCannotBeRotated() {
+        ValidatedToken token = refreshTokenService.verify(refreshTokenService.startFamily(USER, 0));
+
+        refreshTokenService.revokeFamily(token);
+
+        assertThat(redisTemplate.hasKey(familyKey(token))).isFalse();
+        assertThatThrownBy(() -> refreshTokenService.rotate(token, USER, 0))
+                .isInstanceOf(BadCredentialsException.class)
+                .hasMessage("Refresh token expired or revoked");
+    }
+
+    @Test
+    void accessTokensAreNotAcceptedAsRefreshTokens() {
+        String accessToken = jwtService.generateToken(USER);
+
+        assertThatThrownBy(() -> refreshTokenService.verify(accessToken))
+                .isInstanceOf(BadCredentialsException.class)
+                .hasMessage("Invalid refresh token");
+    }
+
+    private static String familyOf(ValidatedToken token) {
+        return token.claims().get(JwtService.CLAIM_FAMILY_ID, String.class);
+    }
+
+    private static String familyKey(ValidatedToken token) {
+        return "auth:refresh:" + familyOf(token);
+    }
+}
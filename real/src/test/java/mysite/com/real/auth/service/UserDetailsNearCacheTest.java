@@ -0,0 +1,81 @@
+package mysite.com.real.auth.service;
+
+import mysite.com.real.support.IntegrationTest;
+import mysite.com.real.user.entity.User;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Steady-state principal resolution issues no SQL; local writes and other nodes'
+// invalidations force the next lookup back to the database. Redis is not running in
+// tests, so only the local tier is exercised here.
+class UserDetailsNearCacheTest extends IntegrationTest {
+
+    @Autowired
+    private UserDetailsNearCache userDetailsCache;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Test
+    void repeatedLookupIssuesNoStatements() {
+        User user = createUser();
+        load(user);
+        // Without Redis the security version check falls back to the database once
+        load(user);
+
+        statistics.clear();
+        UserDetails details = load(user);
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(details.getUsername()).isEqualTo(user.getEmail());
+        assertThat(details.getPassword()).isEmpty();
+        assertThat(details.getAuthorities()).extracting(Object::toString).containsExactly("ROLE_USER");
+    }
+
+    @Test
+    void roleAssignmentIsVisibleOnTheNextLookup() {
+        User user = createUser();
+        load(user);
+
+        userService.assignRoleToUser(user.getId(), "ROLE_ADMIN");
+
+        assertThat(load(user).getAuthorities()).extracting(Object::toString)
+                .containsExactlyInAnyOrder("ROLE_USER", "ROLE_ADMIN");
+    }
+
+    @Test
+    void deactivationIsVisibleOnTheNextLookup() {
+        User user = createUser();
+        load(user);
+
+        userService.deactivateUser(user.getId());
+
+        assertThatThrownBy(() -> load(user)).isInstanceOf(UsernameNotFoundException.class);
+    }
+
+    @Test
+    void invalidationFromAnotherNodeForcesAReload() {
+        User user = createUser();
+        load(user);
+
+        listenerFor("user-details:invalidate").onMessage(new DefaultMessage("user-details:invalidate".getBytes(StandardCharsets.UTF_8),
+                ("other-node " + user.getEmail()).getBytes(StandardCharsets.UTF_8)), null);
+
+        statistics.clear();
+        load(user);
+        assertThat(statistics.getPrepareStatementCount()).isPositive();
+    }
+
+    private UserDetails load(User user) {
+        return userDetailsCache.get(user.getEmail(), userDetailsService::loadUserByUsername);
+    }
+}
@@ -0,0 +1,36 @@
+package mysite.com.real.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import mysite.com.real.auth.service.JwtService;
+
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+// Builds the services under benchmark without a Spring context
+final class BenchmarkFixtures {
+
+    static final String SECRET_KEY = "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+    static final long ACCESS_EXPIRATION = 3_600_000L;
+    static final long REFRESH_EXPIRATION = 604_800_000L;
+
+    private BenchmarkFixtures() {
+    }
+
+    static JwtService jwtService(MeterRegistry meterRegistry, boolean stateless) {
+        JwtService jwtService = new JwtService(meterRegistry);
+        ReflectionTestUtils.setField(jwtService, "secretKey", SECRET_KEY);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", ACCESS_EXPIRATION);
+        ReflectionTestUtils.setField(jwtService, "refreshExpiration", REFRESH_EXPIRATION);
+        ReflectionTestUtils.setField(jwtService, "stateless", stateless);
+        ReflectionTestUtils.invokeMethod(jwtService, "init");
+        return jwtService;
+    }
+
+    static UserDetails user(String email) {
+        return User.withUsername(email)
+                .password("")
+                .authorities("ROLE_USER")
+                .build();
+    }
+}
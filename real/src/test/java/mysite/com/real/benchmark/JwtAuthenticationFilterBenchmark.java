@@ -0,0 +1,121 @@
+package mysite.com.real.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import mysite.com.real.auth.filter.JwtAuthenticationFilter;
+import mysite.com.real.auth.service.CustomUserDetailsService;
+import mysite.com.real.auth.service.JwtService;
+import mysite.com.real.auth.service.SecurityVersionService;
+import mysite.com.real.auth.service.TokenRevocationService;
+import mysite.com.real.auth.service.UserDetailsNearCache;
+import mysite.com.real.auth.service.VerifiedPrincipalCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// One authenticated request through the JWT filter:
+//   cached    - token already in the verified-principal cache
+//   stateless - cache miss, principal rebuilt from claims
+//   database  - cache miss on a token without a security version; the user load is a
+//               mock behind a pass-through near-cache, so this is the filter's own cost
+//               without the Redis or MySQL round trip
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+
+    @Param({"cached", "stateless", "database"})
+    private String path;
+
+    private JwtAuthenticationFilter filter;
+    private VerifiedPrincipalCache principalCache;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private FilterChain chain;
+    private String token;
+    private boolean evictBeforeEach;
+
+    @Setup
+    public void setUp() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        JwtService jwtService = BenchmarkFixtures.jwtService(meterRegistry, !"database".equals(path));
+        UserDetails user = BenchmarkFixtures.user("bench@example.com");
+
+        CustomUserDetailsService userDetailsService = mock(CustomUserDetailsService.class);
+        when(userDetailsService.loadUserByUsername(anyString())).thenReturn(user);
+        SecurityVersionService securityVersionService = mock(SecurityVersionService.class);
+        when(securityVersionService.isCurrent(anyString(), anyLong())).thenReturn(true);
+
+        UserDetailsNearCache userDetailsCache = mock(UserDetailsNearCache.class);
+        when(userDetailsCache.get(anyString(), any())).thenAnswer(invocation ->
+                invocation.<Function<String, UserDetails>>getArgument(1).apply(invocation.getArgument(0)));
+
+        principalCache = new VerifiedPrincipalCache(meterRegistry);
+        ReflectionTestUtils.setField(principalCache, "maxSize", 10_000L);
+        ReflectionTestUtils.setField(principalCache, "ttlMillis", 60_000L);
+        ReflectionTestUtils.invokeMethod(principalCache, "init");
+
+        filter = new JwtAuthenticationFilter(jwtService, userDetailsService, securityVersionService,
+                principalCache, new TokenRevocationService(null, null), userDetailsCache, meterRegistry);
+
+        // Tokens without "sv" always take the database path
+        token = "database".equals(path)
+                ? jwtService.generateToken(user)
+                : jwtService.generateToken(user, 0L);
+        evictBeforeEach = !"cached".equals(path);
+
+        request = new MockHttpServletRequest("GET", "/api/test");
+        request.setServletPath("/api/test");
+        request.addHeader("Authorization", "Bearer " + token);
+        response = new MockHttpServletResponse();
+        chain = (req, res) -> { };
+    }
+
+    @Benchmark
+    public Object doFilter() throws ServletException, IOException {
+        if (evictBeforeEach) {
+            principalCache.invalidate(token);
+        }
+        SecurityContextHolder.clearContext();
+        filter.doFilter(request, response, chain);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtAuthenticationFilterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
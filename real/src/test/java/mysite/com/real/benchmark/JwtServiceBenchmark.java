@@ -0,0 +1,71 @@
+package mysite.com.real.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mysite.com.real.auth.dto.ValidatedToken;
+import mysite.com.real.auth.service.JwtService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// HMAC signing and verification of access and refresh tokens
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    private JwtService jwtService;
+    private UserDetails userDetails;
+    private String accessToken;
+
+    @Setup
+    public void setUp() {
+        jwtService = BenchmarkFixtures.jwtService(new SimpleMeterRegistry(), true);
+        userDetails = BenchmarkFixtures.user("bench@example.com");
+        accessToken = jwtService.generateToken(userDetails, 0L);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken(userDetails, 0L);
+    }
+
+    @Benchmark
+    public String generateRefreshToken() {
+        return jwtService.generateRefreshToken(userDetails, 0L, "family", UUID.randomUUID().toString());
+    }
+
+    @Benchmark
+    public ValidatedToken verifyToken() {
+        return jwtService.verifyToken(accessToken);
+    }
+
+    // Verification plus rebuilding the principal from claims, as stateless mode does
+    @Benchmark
+    public UserDetails verifyAndExtractUserDetails() {
+        return jwtService.extractUserDetails(jwtService.verifyToken(accessToken));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtServiceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
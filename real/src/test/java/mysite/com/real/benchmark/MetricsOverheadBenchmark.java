@@ -0,0 +1,87 @@
+package mysite.com.real.benchmark;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import mysite.com.real.auth.dto.ValidatedToken;
+import mysite.com.real.auth.service.JwtService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of the meters on the hot paths. "noop" denies every meter, so the same code
+// runs against no-op timers; the difference to "prometheus" is what instrumentation adds.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+
+    @Param({"noop", "prometheus"})
+    private String registry;
+
+    private JwtService jwtService;
+    private String token;
+    private Timer timer;
+    private Counter counter;
+
+    @Setup
+    public void setUp() {
+        MeterRegistry meterRegistry = createRegistry(registry);
+        jwtService = BenchmarkFixtures.jwtService(meterRegistry, false);
+        token = jwtService.generateToken(BenchmarkFixtures.user("bench@example.com"), 0L);
+
+        timer = Timer.builder("bench.timer").tag("outcome", "success").register(meterRegistry);
+        counter = Counter.builder("bench.counter").tag("outcome", "allowed").register(meterRegistry);
+    }
+
+    private static MeterRegistry createRegistry(String kind) {
+        if ("prometheus".equals(kind)) {
+            return new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        }
+        SimpleMeterRegistry noop = new SimpleMeterRegistry();
+        noop.config().meterFilter(MeterFilter.deny());
+        return noop;
+    }
+
+    @Benchmark
+    public void timerRecord() {
+        timer.record(120, TimeUnit.NANOSECONDS);
+    }
+
+    @Benchmark
+    public void counterIncrement() {
+        counter.increment();
+    }
+
+    @Benchmark
+    public ValidatedToken verifyToken() {
+        return jwtService.verifyToken(token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MetricsOverheadBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,138 @@
+package mysite.com.real.benchmark;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import mysite.com.real.config.RateLimitProperties;
+import mysite.com.real.filter.RateLimitingFilter;
+import mysite.com.real.ratelimit.dto.RateLimitAlgorithm;
+import mysite.com.real.ratelimit.service.HybridRateLimiter;
+import mysite.com.real.ratelimit.service.RateLimitPolicyMatcher;
+import mysite.com.real.ratelimit.service.RateLimiter;
+import mysite.com.real.ratelimit.service.RateLimiterCircuitBreaker;
+import mysite.com.real.ratelimit.service.RedisRateLimiter;
+import mysite.com.real.support.EmbeddedRedis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// One anonymous /api request through RateLimitingFilter against a local redis-server.
+// The limit is high enough that every request is admitted, so this measures the
+// allow path: policy match, key build, limiter round trip and headers.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class RateLimitingFilterBenchmark {
+
+    @Param({"redis", "hybrid"})
+    private String limiter;
+
+    @Param({"TOKEN_BUCKET", "SLIDING_WINDOW_LOG"})
+    private RateLimitAlgorithm algorithm;
+
+    private RedisServer redisServer;
+    private LettuceConnectionFactory connectionFactory;
+    private HybridRateLimiter hybridRateLimiter;
+    private RateLimitingFilter filter;
+
+    @State(Scope.Thread)
+    public static class Client {
+        MockHttpServletRequest request;
+        MockHttpServletResponse response;
+
+        @Setup
+        public void setUp() {
+            request = new MockHttpServletRequest("GET", "/api/test");
+            request.setRemoteAddr("10.0.0." + Thread.currentThread().threadId() % 250);
+            response = new MockHttpServletResponse();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int port = EmbeddedRedis.freePort();
+        redisServer = EmbeddedRedis.start(port);
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", port));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RateLimiterCircuitBreaker circuitBreaker = new RateLimiterCircuitBreaker(redisTemplate);
+        ReflectionTestUtils.setField(circuitBreaker, "failureThreshold", 5);
+        ReflectionTestUtils.setField(circuitBreaker, "slowCallThreshold", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(circuitBreaker, "openDuration", Duration.ofSeconds(5));
+        RedisRateLimiter redisRateLimiter = new RedisRateLimiter(redisTemplate, circuitBreaker, meterRegistry);
+
+        RateLimiter rateLimiter = redisRateLimiter;
+        if ("hybrid".equals(limiter)) {
+            hybridRateLimiter = new HybridRateLimiter(redisRateLimiter, circuitBreaker);
+            ReflectionTestUtils.setField(hybridRateLimiter, "maxError", 0.1);
+            ReflectionTestUtils.setField(hybridRateLimiter, "nodes", 1);
+            ReflectionTestUtils.setField(hybridRateLimiter, "leaseTtl", Duration.ofSeconds(1));
+            ReflectionTestUtils.invokeMethod(hybridRateLimiter, "init");
+            rateLimiter = hybridRateLimiter;
+        }
+
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setAlgorithm(algorithm);
+        properties.setLimit(1_000_000_000L);
+        properties.setWindow(Duration.ofMinutes(1));
+
+        filter = new RateLimitingFilter(rateLimiter, new RateLimitPolicyMatcher(properties), meterRegistry);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (hybridRateLimiter != null) {
+            ReflectionTestUtils.invokeMethod(hybridRateLimiter, "shutdown");
+        }
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @Benchmark
+    public int doFilter(Client client) throws ServletException, IOException {
+        FilterChain chain = (req, res) -> { };
+        filter.doFilter(client.request, client.response, chain);
+        return client.response.getStatus();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RateLimitingFilterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,67 @@
+package mysite.com.real.benchmark;
+
+import mysite.com.real.auth.service.TokenRevocationService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Added per-request cost of the revocation check when the token is not revoked.
+// No Redis is involved: a miss is answered by the local Bloom filter alone.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RevocationCheckBenchmark {
+
+    @Param({"0", "10000", "100000"})
+    private int revokedTokens;
+
+    private TokenRevocationService revocationService;
+    private String[] liveTokenIds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        revocationService = new TokenRevocationService(null, null);
+        for (int i = 0; i < revokedTokens; i++) {
+            revocationService.markRevokedLocally(UUID.randomUUID().toString());
+        }
+        liveTokenIds = new String[1024];
+        for (int i = 0; i < liveTokenIds.length; i++) {
+            liveTokenIds[i] = UUID.randomUUID().toString();
+        }
+    }
+
+    @Benchmark
+    public String baseline() {
+        return liveTokenIds[next++ & 1023];
+    }
+
+    @Benchmark
+    public boolean isRevokedMiss() {
+        return revocationService.isRevoked(liveTokenIds[next++ & 1023]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RevocationCheckBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,105 @@
+package mysite.com.real.benchmark;
+
+import mysite.com.real.RealApplication;
+import mysite.com.real.support.EmbeddedRedis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Full application startup (context refresh to ready, then close) against a schema that
+// already exists, as on a redeploy:
+//   hibernate-update - the old ddl-auto=update, Hibernate diffs the mappings against the schema
+//   flyway-validate  - Flyway checks its history table, Hibernate only validates
+// Defaults to a file-backed H2 in MySQL mode. The metadata scan that ddl-auto=update runs is
+// much slower on MySQL; for numbers that mean something there, point each param at its own
+// empty database: -Dbenchmark.jdbc-url=... -Dbenchmark.jdbc-user=... -Dbenchmark.jdbc-password=...
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SchemaStartupBenchmark {
+
+    @Param({"hibernate-update", "flyway-validate"})
+    public String schema;
+
+    private Path directory;
+    private RedisServer redisServer;
+    private String[] args;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int port = EmbeddedRedis.freePort();
+        redisServer = EmbeddedRedis.start(port);
+        directory = Files.createTempDirectory("schema-startup-bench");
+
+        List<String> properties = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + System.getProperty("benchmark.jdbc-url",
+                        "jdbc:h2:file:" + directory.resolve("db") + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE"),
+                "--spring.datasource.username=" + System.getProperty("benchmark.jdbc-user", "sa"),
+                "--spring.datasource.password=" + System.getProperty("benchmark.jdbc-password", ""),
+                "--spring.data.redis.host=localhost",
+                "--spring.data.redis.port=" + port,
+                "--server.port=0",
+                "--logging.level.root=WARN"));
+        if ("hibernate-update".equals(schema)) {
+            properties.add("--spring.jpa.hibernate.ddl-auto=update");
+            properties.add("--spring.flyway.enabled=false");
+        }
+        args = properties.toArray(String[]::new);
+
+        // The first start creates the schema; every measured start finds it in place
+        boot().close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        redisServer.stop();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public long startup() {
+        try (ConfigurableApplicationContext context = boot()) {
+            return context.getStartupDate();
+        }
+    }
+
+    private ConfigurableApplicationContext boot() {
+        return new SpringApplicationBuilder(RealApplication.class)
+                .profiles("test")
+                .run(args);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SchemaStartupBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,120 @@
+package mysite.com.real.benchmark;
+
+import mysite.com.real.user.dto.UserFileFormat;
+import mysite.com.real.user.service.UserExportService;
+
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Full export of a 1M-user table to a discarding stream. The database is a file-backed H2
+// with lazy query execution, so rows come off disk as the cursor advances; the fork's heap is
+// capped well below the size of the table as objects, so finishing at all shows the export
+// runs in constant memory. Add -prof gc to see allocation per export.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class UserExportBenchmark {
+
+    @Param({"1000000"})
+    public int users;
+
+    @Param({"NDJSON", "CSV"})
+    public UserFileFormat format;
+
+    @Param({"1000"})
+    public int fetchSize;
+
+    private Path directory;
+    private UserExportService exportService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("user-export-bench");
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:file:" + directory.resolve("db")
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;LAZY_QUERY_EXECUTION=1");
+        dataSource.setUser("sa");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        seed(new JdbcTemplate(dataSource), users);
+
+        exportService = new UserExportService(dataSource, new ObjectMapper(), fetchSize, 1000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public long export() throws IOException {
+        CountingOutputStream output = new CountingOutputStream();
+        long exported = exportService.export(output, format);
+        if (exported != users) {
+            throw new IllegalStateException("Exported " + exported + " of " + users + " users");
+        }
+        return output.bytes;
+    }
+
+    // Schema from the migrations; every user has ROLE_USER, every 100th also ROLE_ADMIN
+    private static void seed(JdbcTemplate jdbcTemplate, int users) {
+        jdbcTemplate.update("insert into roles (id, name) values (1, 'ROLE_USER'), (2, 'ROLE_ADMIN')");
+        jdbcTemplate.update("insert into users (id, first_name, last_name, email, password_hash, phone, "
+                + "is_active, created_at, updated_at, name, security_version, version) "
+                + "select x, 'Bench', 'User', 'user' || x || '@example.com', "
+                + "'$2a$10$abcdefghijklmnopqrstuuCzKwd8u1Bd9ZrIqjQ0fWc9Lf6G0Yt7e', '555-0100', "
+                + "true, current_timestamp, current_timestamp, 'Bench User', 0, 0 "
+                + "from system_range(1, ?)", users);
+        jdbcTemplate.update("insert into user_roles (user_id, role_id) select x, 1 from system_range(1, ?)", users);
+        jdbcTemplate.update("insert into user_roles (user_id, role_id) select x, 2 from system_range(1, ?) "
+                + "where mod(x, 100) = 0", users);
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UserExportBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
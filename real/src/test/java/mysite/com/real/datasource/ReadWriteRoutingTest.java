@@ -0,0 +1,112 @@
+package mysite.com.real.datasource;
+
+import mysite.com.real.auth.service.CustomUserDetailsService;
+import mysite.com.real.support.IntegrationTest;
+import mysite.com.real.user.entity.User;
+import mysite.com.real.user.repository.UserRepository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The "replica" is a second H2 database with the same schema that never receives the
+// primary's writes, so a row written in a test shows exactly which pool a read went to.
+// Reads that must not be pinned by the write run on a fresh thread.
+@SpringBootTest(properties = {
+        "application.datasource.replica.url=" + ReadWriteRoutingTest.REPLICA_URL,
+        "application.datasource.replica.read-your-writes-window=60000"
+})
+class ReadWriteRoutingTest extends IntegrationTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeAll
+    static void migrateReplica() {
+        Flyway.configure().dataSource(REPLICA_URL, "sa", "").load().migrate();
+    }
+
+    @Test
+    void readOnlyWorkGoesToTheReplica() throws Exception {
+        User user = createUser();
+
+        assertThat(inNewThread(() -> userService.getUserByEmail(user.getEmail()))).isEmpty();
+        assertThat(inNewThread(() -> userService.existsByEmail(user.getEmail()))).isFalse();
+    }
+
+    @Test
+    void onPrimaryReadsTheLatestCommit() throws Exception {
+        User user = createUser();
+
+        assertThat(inNewThread(() -> DataSourceRouting.onPrimary(() -> userService.getUserByEmail(user.getEmail()))))
+                .isPresent();
+    }
+
+    @Test
+    void readsAfterAWriteOnTheSameThreadStayOnThePrimary() {
+        User user = createUser();
+
+        assertThat(userService.getUserByEmail(user.getEmail())).isPresent();
+    }
+
+    @Test
+    void principalLoadRetriesUnreplicatedUsersOnThePrimary() throws Exception {
+        User user = createUser();
+
+        UserDetails details = inNewThread(() -> userDetailsService.loadUserByUsername(user.getEmail()));
+
+        assertThat(details.getUsername()).isEqualTo(user.getEmail());
+    }
+
+    @Test
+    void principalLoadReadsFromTheReplica() throws Exception {
+        String email = seedReplicaOnlyUser();
+
+        UserDetails details = inNewThread(() -> userDetailsService.loadUserByUsername(email));
+
+        assertThat(details.getUsername()).isEqualTo(email);
+    }
+
+    @Test
+    void securityVersionLoadsOnPrimaryIgnoreTheReplica() throws Exception {
+        String email = seedReplicaOnlyUser();
+
+        assertThat(inNewThread(() -> userRepository.findSecurityVersionByEmail(email))).contains(7L);
+        assertThat(inNewThread(() -> DataSourceRouting.onPrimary(() -> userRepository.findSecurityVersionByEmail(email))))
+                .isEmpty();
+        assertThat(inNewThread(() -> DataSourceRouting.onPrimary(() -> userRepository.findByEmail(email))))
+                .isEmpty();
+    }
+
+    // A user that exists only in the replica database, so finding it proves where a read went
+    private static String seedReplicaOnlyUser() {
+        String email = uniqueEmail();
+        new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", "")).update(
+                "insert into users (first_name, last_name, email, password_hash, is_active, created_at, "
+                        + "security_version, version) values ('Replica', 'Only', ?, 'hash', true, current_timestamp, 7, 0)",
+                email);
+        return email;
+    }
+
+    private static <T> T inNewThread(Supplier<T> action) throws Exception {
+        try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
+            return executor.submit(action::get).get();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package mysite.com.real.loadtest;
+
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import mysite.com.real.auth.dto.AuthenticationResponse;
+import mysite.com.real.auth.dto.LoginRequest;
+import mysite.com.real.auth.dto.RegisterRequest;
+import mysite.com.real.role.entity.Role;
+import mysite.com.real.role.repository.RoleRepository;
+import mysite.com.real.support.EmbeddedRedis;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.test.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import redis.embedded.RedisServer;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// End-to-end load test against the full app with H2 and an embedded redis-server, so it
+// runs with no network or Docker. Excluded from the default build; run it with
+//
+//   mvn -Pload-test test -Dloadtest.rate=300 -Dloadtest.duration=60s
+//
+// Knobs (system properties): loadtest.rate (arrivals/s), loadtest.warmup, loadtest.duration,
+// loadtest.users (pre-registered accounts), loadtest.mix (register,login,test weights),
+// loadtest.arrivals (poisson|constant) and loadtest.max-in-flight.
+//
+// Thread mode comparison: run once as is (virtual threads) and once with
+// -Dspring.threads.virtual.enabled=false; the report header names the mode. In virtual
+// mode JFR jdk.VirtualThreadPinned events are recorded for the whole run and must be zero,
+// which covers the Lettuce, Hikari/MySQL-driver and filter paths under real load.
+@Slf4j
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles({"test", "loadtest"})
+class AuthTrafficLoadTest {
+
+    private static final String PASSWORD = "load-test-password";
+    private static final int REDIS_PORT = EmbeddedRedis.freePort();
+    private static final RedisServer REDIS = EmbeddedRedis.start(REDIS_PORT);
+
+    @DynamicPropertySource
+    static void redisProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", () -> "localhost");
+        registry.add("spring.data.redis.port", () -> REDIS_PORT);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        REDIS.stop();
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private final AtomicLong registrations = new AtomicLong();
+
+    @Test
+    void mixedAuthTraffic() throws Exception {
+        double rate = Double.parseDouble(System.getProperty("loadtest.rate", "200"));
+        Duration warmup = Duration.parse("PT" + System.getProperty("loadtest.warmup", "10s"));
+        Duration duration = Duration.parse("PT" + System.getProperty("loadtest.duration", "30s"));
+        int users = Integer.getInteger("loadtest.users", 200);
+        String[] mix = System.getProperty("loadtest.mix", "5,15,80").split(",");
+        boolean poisson = !"constant".equals(System.getProperty("loadtest.arrivals", "poisson"));
+        int maxInFlight = Integer.getInteger("loadtest.max-in-flight", 2000);
+
+        if (!roleRepository.existsByName("ROLE_USER")) {
+            Role role = new Role();
+            role.setName("ROLE_USER");
+            roleRepository.save(role);
+        }
+
+        try (HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build()) {
+
+            // Accounts for login and authenticated traffic, registered before the clock starts
+            List<String> emails = new ArrayList<>();
+            List<String> tokens = new ArrayList<>();
+            for (int i = 0; i < users; i++) {
+                String email = nextEmail();
+                HttpResponse<String> response = client.send(registerRequest(email),
+                        HttpResponse.BodyHandlers.ofString());
+                assertThat(response.statusCode()).isEqualTo(200);
+                emails.add(email);
+                tokens.add(objectMapper.readValue(response.body(), AuthenticationResponse.class).getToken());
+            }
+
+            OpenModelLoadGenerator generator = new OpenModelLoadGenerator(client, List.of(
+                    new OpenModelLoadGenerator.Scenario("register", Integer.parseInt(mix[0].trim()),
+                            () -> registerRequest(nextEmail())),
+                    new OpenModelLoadGenerator.Scenario("login", Integer.parseInt(mix[1].trim()),
+                            () -> loginRequest(emails.get(ThreadLocalRandom.current().nextInt(emails.size())))),
+                    new OpenModelLoadGenerator.Scenario("test", Integer.parseInt(mix[2].trim()),
+                            () -> testRequest(tokens.get(ThreadLocalRandom.current().nextInt(tokens.size()))))
+            ), maxInFlight);
+
+            LongAdder pinnedEvents = new LongAdder();
+            OpenModelLoadGenerator.Report report;
+            try (RecordingStream pinning = new RecordingStream()) {
+                pinning.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ofMillis(1)).withStackTrace();
+                pinning.onEvent("jdk.VirtualThreadPinned", event -> {
+                    pinnedEvents.increment();
+                    log.warn("Virtual thread pinned for {}: {}", event.getDuration(), event.getStackTrace());
+                });
+                pinning.startAsync();
+                report = generator.run(rate, warmup, duration, poisson);
+                pinning.stop();
+            }
+            log.info("Load test at {} arrivals/s ({}), {} measured, {} threads, {} pinning events:{}", rate,
+                    poisson ? "poisson" : "constant", duration, virtualThreads ? "virtual" : "platform",
+                    pinnedEvents.sum(), report.format());
+
+            if (virtualThreads) {
+                assertThat(pinnedEvents.sum()).as("jdk.VirtualThreadPinned events").isZero();
+            }
+
+            for (EndpointStats stats : report.endpoints().values()) {
+                assertThat(stats.errors()).as("transport errors on %s", stats.name()).isZero();
+            }
+        }
+    }
+
+    private String nextEmail() {
+        return "load-" + registrations.incrementAndGet() + "-" + System.nanoTime() + "@example.com";
+    }
+
+    private HttpRequest registerRequest(String email) {
+        return post("/api/public/register", RegisterRequest.builder()
+                .firstName("Load")
+                .lastName("Test")
+                .email(email)
+                .password(PASSWORD)
+                .phone("555-0100")
+                .build());
+    }
+
+    private HttpRequest loginRequest(String email) {
+        return post("/api/public/login", new LoginRequest(email, PASSWORD));
+    }
+
+    private HttpRequest testRequest(String token) {
+        return HttpRequest.newBuilder(uri("/api/test"))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+    }
+
+    private HttpRequest post(String path, Object body) {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
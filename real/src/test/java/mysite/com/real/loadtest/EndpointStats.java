@@ -0,0 +1,89 @@
+package mysite.com.real.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency and outcome counts for one endpoint. Latency is measured from the request's
+// intended start, not from when it was sent, so a stalled server shows up in the
+// percentiles instead of being hidden by fewer requests (coordinated omission).
+final class EndpointStats {
+
+    private static final long MAX_TRACKED_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final String name;
+    private final Recorder recorder = new Recorder(MAX_TRACKED_NANOS, 3);
+    private final Histogram total = new Histogram(MAX_TRACKED_NANOS, 3);
+    private final LongAdder success = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder otherStatus = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    void recordResponse(int status, long latencyNanos) {
+        recorder.recordValue(Math.min(latencyNanos, MAX_TRACKED_NANOS));
+        if (status >= 200 && status < 300) {
+            success.increment();
+        } else if (status == 429) {
+            rateLimited.increment();
+        } else {
+            otherStatus.increment();
+        }
+    }
+
+    void recordError(long latencyNanos) {
+        recorder.recordValue(Math.min(latencyNanos, MAX_TRACKED_NANOS));
+        errors.increment();
+    }
+
+    // Arrival skipped because too many requests were already in flight
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    // Discard what was recorded so far (end of warm-up)
+    synchronized void reset() {
+        recorder.reset();
+        total.reset();
+        success.reset();
+        rateLimited.reset();
+        otherStatus.reset();
+        errors.reset();
+        dropped.reset();
+    }
+
+    synchronized Histogram snapshot() {
+        total.add(recorder.getIntervalHistogram());
+        return total.copy();
+    }
+
+    String name() {
+        return name;
+    }
+
+    long success() {
+        return success.sum();
+    }
+
+    long rateLimited() {
+        return rateLimited.sum();
+    }
+
+    long otherStatus() {
+        return otherStatus.sum();
+    }
+
+    long errors() {
+        return errors.sum();
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+}
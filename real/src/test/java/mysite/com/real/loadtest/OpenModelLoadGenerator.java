@@ -0,0 +1,141 @@
+package mysite.com.real.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// Open-model generator: requests arrive at a fixed rate (or as a Poisson process)
+// whether or not earlier ones have finished, like independent clients in production.
+// A closed loop of N workers would slow down with the server and hide queueing.
+final class OpenModelLoadGenerator {
+
+    record Scenario(String name, int weight, Supplier<HttpRequest> request) {
+    }
+
+    record Report(Map<String, EndpointStats> endpoints, long measuredNanos) {
+
+        double throughput(EndpointStats stats) {
+            long completed = stats.success() + stats.rateLimited() + stats.otherStatus() + stats.errors();
+            return completed / (measuredNanos / 1e9);
+        }
+
+        String format() {
+            StringBuilder out = new StringBuilder(String.format(Locale.ROOT,
+                    "%n%-10s %9s %8s %8s %8s %8s %8s %9s %9s %9s %9s %9s%n",
+                    "endpoint", "req/s", "2xx", "429", "other", "errors", "dropped",
+                    "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+            for (EndpointStats stats : endpoints.values()) {
+                Histogram histogram = stats.snapshot();
+                out.append(String.format(Locale.ROOT,
+                        "%-10s %9.1f %8d %8d %8d %8d %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                        stats.name(), throughput(stats), stats.success(), stats.rateLimited(),
+                        stats.otherStatus(), stats.errors(), stats.dropped(),
+                        millis(histogram.getValueAtPercentile(50)),
+                        millis(histogram.getValueAtPercentile(90)),
+                        millis(histogram.getValueAtPercentile(99)),
+                        millis(histogram.getValueAtPercentile(99.9)),
+                        millis(histogram.getMaxValue())));
+            }
+            return out.toString();
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+
+    private final HttpClient client;
+    private final List<Scenario> scenarios;
+    private final int totalWeight;
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    OpenModelLoadGenerator(HttpClient client, List<Scenario> scenarios, int maxInFlight) {
+        this.client = client;
+        this.scenarios = List.copyOf(scenarios);
+        this.totalWeight = scenarios.stream().mapToInt(Scenario::weight).sum();
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        scenarios.forEach(scenario -> stats.put(scenario.name(), new EndpointStats(scenario.name())));
+    }
+
+    // Runs warm-up then measurement on the calling thread, which only schedules; responses
+    // are handled on the client's executor. Arrivals that find maxInFlight requests still
+    // open are counted as dropped rather than delayed, so the arrival rate stays fixed.
+    Report run(double arrivalsPerSecond, Duration warmup, Duration duration, boolean poisson)
+            throws InterruptedException {
+        double meanIntervalNanos = 1e9 / arrivalsPerSecond;
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        boolean measuring = warmup.isZero();
+
+        long next = start;
+        while (next < end) {
+            if (!measuring && next >= measureFrom) {
+                stats.values().forEach(EndpointStats::reset);
+                measuring = true;
+            }
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            dispatch(pick(), next);
+            next += poisson
+                    ? (long) (-Math.log(1 - random.nextDouble()) * meanIntervalNanos)
+                    : (long) meanIntervalNanos;
+        }
+
+        // Let requests still in flight finish so their latency is counted
+        if (inFlight.tryAcquire(maxInFlight, 30, TimeUnit.SECONDS)) {
+            inFlight.release(maxInFlight);
+        }
+        return new Report(stats, end - measureFrom);
+    }
+
+    private Scenario pick() {
+        int ticket = random.nextInt(totalWeight);
+        for (Scenario scenario : scenarios) {
+            ticket -= scenario.weight();
+            if (ticket < 0) {
+                return scenario;
+            }
+        }
+        return scenarios.getLast();
+    }
+
+    private void dispatch(Scenario scenario, long intendedStart) {
+        EndpointStats endpoint = stats.get(scenario.name());
+        if (!inFlight.tryAcquire()) {
+            endpoint.recordDropped();
+            return;
+        }
+        client.sendAsync(scenario.request().get(), HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    long latency = System.nanoTime() - intendedStart;
+                    try {
+                        if (error != null) {
+                            endpoint.recordError(latency);
+                        } else {
+                            endpoint.recordResponse(response.statusCode(), latency);
+                        }
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+    }
+}
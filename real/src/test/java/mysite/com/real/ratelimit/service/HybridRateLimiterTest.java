@@ -0,0 +1,133 @@
+package mysite.com.real.ratelimit.service;
+
+import mysite.com.real.ratelimit.dto.RateLimitAlgorithm;
+import mysite.com.real.ratelimit.dto.RateLimitLease;
+import mysite.com.real.ratelimit.dto.RateLimitRule;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Redis is mocked: every lease call grants what was asked for, so the tests see exactly
+// how many tokens the node asks for and hands back
+class HybridRateLimiterTest {
+
+    private static final String KEY = "rl:api:client";
+    // 1000 per minute, 10% spread over 2 nodes: leases of 50
+    private static final RateLimitRule RULE = new RateLimitRule(RateLimitAlgorithm.TOKEN_BUCKET, 1000,
+            Duration.ofMinutes(1));
+    private static final long LEASE_SIZE = 50;
+
+    private final RedisRateLimiter redisRateLimiter = mock(RedisRateLimiter.class);
+    private final RateLimiterCircuitBreaker circuitBreaker = mock(RateLimiterCircuitBreaker.class);
+    private HybridRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        when(circuitBreaker.isCallPermitted()).thenReturn(true);
+        when(redisRateLimiter.lease(eq(KEY), eq(RULE), anyLong(), anyLong())).thenAnswer(invocation ->
+                new RateLimitLease(invocation.getArgument(2, Long.class), 500, 30_000, 0));
+        limiter = new HybridRateLimiter(redisRateLimiter, circuitBreaker);
+        ReflectionTestUtils.setField(limiter, "maxError", 0.1);
+        ReflectionTestUtils.setField(limiter, "nodes", 2);
+        ReflectionTestUtils.setField(limiter, "leaseTtl", Duration.ofMinutes(1));
+        limiter.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        limiter.shutdown();
+    }
+
+    @Test
+    void firstRequestLeasesItsShareOfTheErrorBudget() {
+        assertThat(limiter.tryAcquire(KEY, RULE, 1).allowed()).isTrue();
+
+        verify(redisRateLimiter).lease(KEY, RULE, LEASE_SIZE, 1);
+    }
+
+    @Test
+    void leaseIsSpentLocallyAndToppedUpAtHalf() {
+        // 49 left after the first request; down to 26 stays local
+        for (int i = 0; i < 24; i++) {
+            assertThat(limiter.tryAcquire(KEY, RULE, 1).allowed()).isTrue();
+        }
+        verify(redisRateLimiter, never()).lease(eq(KEY), eq(RULE), eq(LEASE_SIZE / 2), anyLong());
+
+        // 25 left: refilled in the background back up to one lease, never beyond
+        limiter.tryAcquire(KEY, RULE, 1);
+        verify(redisRateLimiter, timeout(1000)).lease(KEY, RULE, LEASE_SIZE / 2, 1);
+    }
+
+    @Test
+    void expiredLeaseReturnsItsTokensToRedis() throws InterruptedException {
+        ReflectionTestUtils.setField(limiter, "leaseTtl", Duration.ofMillis(1));
+        limiter.tryAcquire(KEY, RULE, 1);
+        Thread.sleep(5);
+
+        limiter.releaseExpiredLeases();
+
+        verify(redisRateLimiter, timeout(1000)).release(KEY, RULE, LEASE_SIZE - 1);
+    }
+
+    @Test
+    void tokensLeftInAnExpiredLeaseAreKeptByTheNextLease() throws InterruptedException {
+        ReflectionTestUtils.setField(limiter, "leaseTtl", Duration.ofMillis(1));
+        limiter.tryAcquire(KEY, RULE, 1);
+        Thread.sleep(5);
+
+        assertThat(limiter.tryAcquire(KEY, RULE, 1).allowed()).isTrue();
+
+        // 49 still held, so only one more token is debited from Redis
+        verify(redisRateLimiter).lease(KEY, RULE, 1, 1);
+        verify(redisRateLimiter, never()).release(eq(KEY), eq(RULE), anyLong());
+    }
+
+    @Test
+    void tokensLeasedWhileTheLeaseIsEvictedAreNotLost() throws Exception {
+        ReflectionTestUtils.setField(limiter, "leaseTtl", Duration.ofMillis(1));
+        limiter.tryAcquire(KEY, RULE, 1);
+        Thread.sleep(5);
+        limiter.releaseExpiredLeases();
+        verify(redisRateLimiter, timeout(1000)).release(KEY, RULE, LEASE_SIZE - 1);
+
+        // The next lease is in flight when the now idle lease is evicted
+        CountDownLatch leasing = new CountDownLatch(1);
+        CountDownLatch evicted = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            leasing.countDown();
+            evicted.await(5, TimeUnit.SECONDS);
+            return new RateLimitLease(invocation.getArgument(2, Long.class), 500, 30_000, 0);
+        }).when(redisRateLimiter).lease(eq(KEY), eq(RULE), anyLong(), anyLong());
+        ReflectionTestUtils.setField(limiter, "leaseTtl", Duration.ofMinutes(1));
+        CompletableFuture<Boolean> acquired = CompletableFuture.supplyAsync(
+                () -> limiter.tryAcquire(KEY, RULE, 1).allowed());
+        assertThat(leasing.await(5, TimeUnit.SECONDS)).isTrue();
+        limiter.evictIdleLeases();
+        evicted.countDown();
+        assertThat(acquired.get(5, TimeUnit.SECONDS)).isTrue();
+
+        // The 49 left over went to the key's new lease: spent locally down to 26, no refill yet
+        for (int i = 0; i < 23; i++) {
+            assertThat(limiter.tryAcquire(KEY, RULE, 1).allowed()).isTrue();
+        }
+        verify(redisRateLimiter, times(2)).lease(eq(KEY), eq(RULE), anyLong(), anyLong());
+    }
+}
@@ -0,0 +1,74 @@
+package mysite.com.real.role.service;
+
+import mysite.com.real.role.entity.Role;
+import mysite.com.real.role.repository.RoleRepository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// The repository is mocked so the test controls how long a reload takes
+class RoleRegistryTest {
+
+    private final RoleRepository roleRepository = mock(RoleRepository.class);
+    private final RoleRegistry registry = new RoleRegistry(roleRepository, mock(StringRedisTemplate.class),
+            mock(RedisMessageListenerContainer.class));
+
+    @Test
+    void concurrentMissesReloadOnce() throws Exception {
+        when(roleRepository.findAll()).thenReturn(List.of(role(1L, "ROLE_USER")));
+        registry.init();
+        // Past the reload interval, as if the registry was loaded a while ago
+        ((AtomicLong) ReflectionTestUtils.getField(registry, "loadedAt")).set(0);
+
+        CountDownLatch reloading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            reloading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(role(1L, "ROLE_USER"), role(2L, "ROLE_NEW"));
+        }).when(roleRepository).findAll();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<?> reloader = executor.submit(() -> registry.getId("ROLE_NEW"));
+            assertThat(reloading.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // While the reload runs, other misses answer from the map they have
+            for (int i = 0; i < 8; i++) {
+                assertThat(executor.submit(() -> registry.getId("ROLE_NEW")).get(5, TimeUnit.SECONDS)).isEmpty();
+            }
+            release.countDown();
+            reloader.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(registry.getId("ROLE_NEW")).contains(2L);
+        // init, then the one reload
+        verify(roleRepository, times(2)).findAll();
+    }
+
+    private static Role role(Long id, String name) {
+        Role role = new Role();
+        role.setId(id);
+        role.setName(name);
+        return role;
+    }
+}
@@ -0,0 +1,67 @@
+package mysite.com.real.role.service;
+
+import mysite.com.real.role.dto.RoleUserCount;
+import mysite.com.real.role.entity.Role;
+import mysite.com.real.support.IntegrationTest;
+import mysite.com.real.user.entity.User;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+// Counts come from native queries on user_roles; each test uses fresh roles so the
+// users other tests leave behind do not change the numbers
+class RoleServiceCountTest extends IntegrationTest {
+
+    @Autowired
+    private RoleService roleService;
+
+    @Test
+    void countByNameCountsOnlyThatRolesUsers() {
+        Role role = roleService.createRole(uniqueRoleName());
+        User first = createUser();
+        User second = createUser();
+        createUser();
+        userService.assignRoleToUser(first.getId(), role.getName());
+        userService.assignRoleToUser(second.getId(), role.getName());
+
+        assertThat(roleService.getUserCountForRole(role.getName())).isEqualTo(2);
+        assertThat(roleService.getUserCountForRole(role.getId())).isEqualTo(2);
+    }
+
+    @Test
+    void roleWithoutUsersCountsZero() {
+        Role role = roleService.createRole(uniqueRoleName());
+
+        assertThat(roleService.getUserCountForRole(role.getName())).isZero();
+        assertThat(roleService.getUserCountForRole(role.getId())).isZero();
+    }
+
+    @Test
+    void perRoleCountsIncludeEmptyRolesInNameOrder() {
+        String prefix = uniqueRoleName();
+        Role used = roleService.createRole(prefix + "_A");
+        Role empty = roleService.createRole(prefix + "_B");
+        User user = createUser();
+        userService.assignRoleToUser(user.getId(), used.getName());
+
+        List<RoleUserCount> counts = roleService.getUserCountsPerRole();
+
+        assertThat(counts).filteredOn(count -> count.getName().startsWith(prefix))
+                .extracting(RoleUserCount::getRoleId, RoleUserCount::getName, RoleUserCount::getUserCount)
+                .containsExactly(
+                        tuple(used.getId(), used.getName(), 1L),
+                        tuple(empty.getId(), empty.getName(), 0L));
+        assertThat(counts).extracting(RoleUserCount::getName).isSorted();
+    }
+
+    private static String uniqueRoleName() {
+        return "ROLE_COUNT_" + UUID.randomUUID().toString().substring(0, 8).toUpperCase(Locale.ROOT);
+    }
+}
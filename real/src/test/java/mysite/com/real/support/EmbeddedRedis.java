@@ -0,0 +1,34 @@
+package mysite.com.real.support;
+
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+
+// A real Redis on a free local port, for tests and benchmarks that need scripts, TTLs or
+// pub/sub to actually run
+public final class EmbeddedRedis {
+
+    private EmbeddedRedis() {
+    }
+
+    public static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Started server; the caller stops it
+    public static RedisServer start(int port) {
+        try {
+            RedisServer server = new RedisServer(port);
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package mysite.com.real.support;
+
+import jakarta.persistence.EntityManagerFactory;
+import mysite.com.real.auth.service.RefreshTokenService;
+import mysite.com.real.datasource.DataSourceRouting;
+import mysite.com.real.role.entity.Role;
+import mysite.com.real.role.repository.RoleRepository;
+import mysite.com.real.role.service.RoleRegistry;
+import mysite.com.real.user.entity.User;
+import mysite.com.real.user.service.UserService;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockReset;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+
+// Base for tests against the full context on H2 (profile "test"). Every subclass declares
+// the same bean overrides, so classes with the same profiles and properties share one context.
+// Redis is not running: refresh tokens are mocked, pub/sub listeners are captured instead.
+@SpringBootTest
+@ActiveProfiles("test")
+public abstract class IntegrationTest {
+
+    protected static final String PASSWORD = "secret-password";
+
+    @Autowired
+    protected UserService userService;
+
+    @Autowired
+    protected RoleRepository roleRepository;
+
+    @Autowired
+    protected RoleRegistry roleRegistry;
+
+    @Autowired
+    protected EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    protected RefreshTokenService refreshTokenService;
+
+    // Not reset between tests: listeners are registered once, at startup
+    @MockitoBean(reset = MockReset.NONE)
+    protected RedisMessageListenerContainer redisMessageListenerContainer;
+
+    protected Statistics statistics;
+
+    @BeforeEach
+    void seedRoles() {
+        for (String name : List.of("ROLE_USER", "ROLE_ADMIN")) {
+            if (!DataSourceRouting.onPrimary(() -> roleRepository.existsByName(name))) {
+                Role role = new Role();
+                role.setName(name);
+                roleRepository.save(role);
+            }
+        }
+        roleRegistry.refresh();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    protected static String uniqueEmail() {
+        return "user-" + UUID.randomUUID() + "@example.com";
+    }
+
+    // Active user with ROLE_USER
+    protected User createUser() {
+        return userService.createUser("Test", "User", uniqueEmail(), PASSWORD, "555-0100", Set.of());
+    }
+
+    // The listener a service registered for this channel, to deliver another node's messages
+    protected MessageListener listenerFor(String channel) {
+        ArgumentCaptor<MessageListener> listeners = ArgumentCaptor.forClass(MessageListener.class);
+        ArgumentCaptor<Topic> topics = ArgumentCaptor.forClass(Topic.class);
+        verify(redisMessageListenerContainer, atLeastOnce()).addMessageListener(listeners.capture(), topics.capture());
+        for (int i = 0; i < topics.getAllValues().size(); i++) {
+            if (topics.getAllValues().get(i) instanceof ChannelTopic topic && topic.getTopic().equals(channel)) {
+                return listeners.getAllValues().get(i);
+            }
+        }
+        throw new AssertionError("No listener registered for " + channel);
+    }
+}
@@ -0,0 +1,80 @@
+package mysite.com.real.user.service;
+
+import mysite.com.real.support.IntegrationTest;
+import mysite.com.real.user.dto.UserFileFormat;
+import mysite.com.real.user.entity.User;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Other tests share the database, so assertions pick out the users created here by email
+class UserExportServiceTest extends IntegrationTest {
+
+    @Autowired
+    private UserExportService exportService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void ndjsonHasOneRecordPerUserWithRolesFolded() throws IOException {
+        User admin = userService.createUser("Ada", "Admin", uniqueEmail(), PASSWORD, "555-0101",
+                Set.of("ROLE_USER", "ROLE_ADMIN"));
+        User plain = createUser();
+
+        List<String> lines = export(UserFileFormat.NDJSON);
+
+        List<String> adminLines = linesFor(lines, admin);
+        assertThat(adminLines).hasSize(1);
+        JsonNode record = objectMapper.readTree(adminLines.getFirst());
+        assertThat(record.get("id").asLong()).isEqualTo(admin.getId());
+        assertThat(record.get("firstName").asString()).isEqualTo("Ada");
+        assertThat(record.get("active").asBoolean()).isTrue();
+        assertThat(record.get("roles").toString()).isEqualTo("[\"ROLE_ADMIN\",\"ROLE_USER\"]");
+        assertThat(record.has("passwordHash")).isFalse();
+        assertThat(linesFor(lines, plain)).hasSize(1);
+        assertNoPasswordHashes(lines, admin, plain);
+    }
+
+    @Test
+    void csvQuotesFieldsAndJoinsRoles() throws IOException {
+        User user = userService.createUser("Smith, Jr.", "O\"Neil", uniqueEmail(), PASSWORD, null,
+                Set.of("ROLE_USER", "ROLE_ADMIN"));
+
+        List<String> lines = export(UserFileFormat.CSV);
+
+        assertThat(lines.getFirst()).isEqualTo("id,email,firstName,lastName,phone,active,createdAt,roles,version");
+        assertThat(linesFor(lines, user)).singleElement().satisfies(line -> assertThat(line)
+                .startsWith(user.getId() + "," + user.getEmail() + ",\"Smith, Jr.\",\"O\"\"Neil\",,true,")
+                .endsWith(",ROLE_ADMIN|ROLE_USER," + user.getVersion()));
+        assertNoPasswordHashes(lines, user);
+    }
+
+    private List<String> export(UserFileFormat format) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        exportService.export(output, format);
+        return output.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    private static List<String> linesFor(List<String> lines, User user) {
+        return lines.stream().filter(line -> line.contains(user.getEmail())).toList();
+    }
+
+    private void assertNoPasswordHashes(List<String> lines, User... users) {
+        for (User user : users) {
+            String hash = userService.getUserById(user.getId()).orElseThrow().getPasswordHash();
+            assertThat(lines).noneMatch(line -> line.contains(hash));
+        }
+        assertThat(lines).noneMatch(line -> line.contains("password"));
+    }
+}
@@ -0,0 +1,139 @@
+package mysite.com.real.user.service;
+
+import mysite.com.real.role.entity.Role;
+import mysite.com.real.support.IntegrationTest;
+import mysite.com.real.user.dto.UserFileFormat;
+import mysite.com.real.user.dto.UserImportReport;
+import mysite.com.real.user.entity.User;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+// Line numbers in the report count the CSV header as line 1
+class UserImportServiceTest extends IntegrationTest {
+
+    private static final String CSV_HEADER = "email,firstName,lastName,password,phone,roles\n";
+
+    @Autowired
+    private UserImportService importService;
+
+    @Test
+    void csvFieldsAreUnquotedAndRolesSplit() throws IOException {
+        String email = uniqueEmail();
+
+        UserImportReport report = importCsv(CSV_HEADER
+                + email + ",\"Smith, Jr.\",\"O\"\"Neil\",secret-password,555-0100,ROLE_USER|ROLE_ADMIN\n");
+
+        assertThat(report.imported()).isEqualTo(1);
+        assertThat(report.errors()).isEmpty();
+        User user = userService.getUserByEmail(email).orElseThrow();
+        assertThat(user.getFirstName()).isEqualTo("Smith, Jr.");
+        assertThat(user.getLastName()).isEqualTo("O\"Neil");
+        assertThat(user.getRoles()).extracting(Role::getName).containsExactlyInAnyOrder("ROLE_USER", "ROLE_ADMIN");
+    }
+
+    @Test
+    void malformedRowsAreReportedAndSkipped() throws IOException {
+        String email = uniqueEmail();
+
+        UserImportReport report = importNdjson("{\"email\": \"broken\n"
+                + "{\"email\":\"" + email + "\",\"firstName\":\"A\",\"lastName\":\"B\",\"password\":\"pw\"}\n"
+                + "{\"email\":\"no-at-sign\",\"firstName\":\"A\",\"lastName\":\"B\",\"password\":\"pw\"}\n");
+
+        assertThat(report.total()).isEqualTo(3);
+        assertThat(report.imported()).isEqualTo(1);
+        assertThat(report.errors()).extracting(UserImportReport.RowError::line).containsExactly(1, 3);
+        assertThat(report.errors().get(0).message()).startsWith("Malformed row");
+        assertThat(report.errors().get(1).message()).isEqualTo("Invalid email");
+    }
+
+    @Test
+    void unterminatedCsvQuoteIsMalformed() throws IOException {
+        UserImportReport report = importCsv(CSV_HEADER + uniqueEmail() + ",\"Open,B,pw,,\n");
+
+        assertThat(report.imported()).isZero();
+        assertThat(report.errors()).singleElement().satisfies(error -> {
+            assertThat(error.line()).isEqualTo(2);
+            assertThat(error.message()).contains("Unterminated quoted field");
+        });
+    }
+
+    @Test
+    void duplicatesInTheFileAreRejectedIgnoringCase() throws IOException {
+        String email = uniqueEmail();
+
+        UserImportReport report = importCsv(CSV_HEADER
+                + email + ",A,B,pw,,\n"
+                + email.toUpperCase(Locale.ROOT) + ",C,D,pw,,\n");
+
+        assertThat(report.imported()).isEqualTo(1);
+        assertThat(report.errors()).extracting(UserImportReport.RowError::line, UserImportReport.RowError::message)
+                .containsExactly(tuple(3, "Duplicate email in file"));
+    }
+
+    @Test
+    void existingAccountsAreRejected() throws IOException {
+        User existing = createUser();
+
+        UserImportReport report = importCsv(CSV_HEADER + existing.getEmail() + ",A,B,pw,,\n");
+
+        assertThat(report.imported()).isZero();
+        assertThat(report.errors()).extracting(UserImportReport.RowError::message)
+                .containsExactly("Email already registered");
+    }
+
+    @Test
+    void unknownRolesAreRejected() throws IOException {
+        String email = uniqueEmail();
+
+        UserImportReport report = importCsv(CSV_HEADER + email + ",A,B,pw,,ROLE_USER|ROLE_NOPE\n");
+
+        assertThat(report.imported()).isZero();
+        assertThat(report.errors()).extracting(UserImportReport.RowError::message)
+                .containsExactly("Role not found: ROLE_NOPE");
+        assertThat(userService.existsByEmail(email)).isFalse();
+    }
+
+    @Test
+    void failedChunkIsRetriedRowByRowAndReportsOnlyTheOffendingLine() throws IOException {
+        String first = uniqueEmail();
+        String tooLong = uniqueEmail();
+        String last = uniqueEmail();
+
+        // The phone column is varchar(255): the batch insert fails on line 3 only
+        UserImportReport report = importCsv(CSV_HEADER
+                + first + ",A,B,pw,,\n"
+                + tooLong + ",A,B,pw," + "5".repeat(300) + ",\n"
+                + last + ",A,B,pw,,\n");
+
+        assertThat(report.imported()).isEqualTo(2);
+        assertThat(report.errors()).singleElement().satisfies(error -> {
+            assertThat(error.line()).isEqualTo(3);
+            assertThat(error.email()).isEqualTo(tooLong);
+            assertThat(error.message()).startsWith("Insert failed");
+        });
+        assertThat(userService.existsByEmail(first)).isTrue();
+        assertThat(userService.existsByEmail(tooLong)).isFalse();
+        assertThat(userService.existsByEmail(last)).isTrue();
+    }
+
+    private UserImportReport importCsv(String content) throws IOException {
+        return importService.importUsers(stream(content), UserFileFormat.CSV);
+    }
+
+    private UserImportReport importNdjson(String content) throws IOException {
+        return importService.importUsers(stream(content), UserFileFormat.NDJSON);
+    }
+
+    private static ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
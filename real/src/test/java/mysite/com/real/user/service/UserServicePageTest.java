@@ -0,0 +1,108 @@
+package mysite.com.real.user.service;
+
+import mysite.com.real.support.IntegrationTest;
+import mysite.com.real.user.dto.UserPage;
+import mysite.com.real.user.dto.UserSummary;
+import mysite.com.real.user.entity.User;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Users created in a test have the highest ids in the shared database, so paging from just
+// before the first of them sees only them
+class UserServicePageTest extends IntegrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void nextCursorIsTheLastIdUntilThePageIsTheLast() {
+        User first = createUser();
+        User second = createUser();
+        User third = createUser();
+
+        UserPage page = userService.getUsers(first.getId() - 1, 2);
+        assertThat(page.items()).extracting(UserSummary::id).containsExactly(first.getId(), second.getId());
+        assertThat(page.nextCursor()).isEqualTo(second.getId());
+
+        UserPage last = userService.getUsers(page.nextCursor(), 2);
+        assertThat(last.items()).extracting(UserSummary::id).containsExactly(third.getId());
+        assertThat(last.nextCursor()).isNull();
+    }
+
+    @Test
+    void pageEndingExactlyAtTheLastUserHasNoNextCursor() {
+        User first = createUser();
+        createUser();
+
+        UserPage page = userService.getUsers(first.getId() - 1, 2);
+
+        assertThat(page.items()).hasSize(2);
+        assertThat(page.nextCursor()).isNull();
+        assertThat(userService.getUsers(Long.MAX_VALUE - 1, 2)).isEqualTo(new UserPage(List.of(), null));
+    }
+
+    @Test
+    void pageSizeIsClampedToOneAndToTheMaximum() {
+        long firstId = seedUsers(UserService.MAX_PAGE_SIZE + 1);
+
+        UserPage smallest = userService.getUsers(firstId - 1, 0);
+        assertThat(smallest.items()).extracting(UserSummary::id).containsExactly(firstId);
+        assertThat(smallest.nextCursor()).isEqualTo(firstId);
+
+        UserPage largest = userService.getUsers(firstId - 1, 10_000);
+        assertThat(largest.items()).hasSize(UserService.MAX_PAGE_SIZE);
+        assertThat(largest.nextCursor()).isEqualTo(largest.items().getLast().id());
+    }
+
+    @Test
+    void activeFilterSkipsDeactivatedUsers() {
+        User first = createUser();
+        User deactivated = createUser();
+        User third = createUser();
+        userService.deactivateUser(deactivated.getId());
+
+        UserPage page = userService.getActiveUsers(first.getId() - 1, 2);
+
+        assertThat(page.items()).extracting(UserSummary::id).containsExactly(first.getId(), third.getId());
+        assertThat(page.nextCursor()).isNull();
+        assertThat(userService.getUsers(first.getId() - 1, 2).items()).extracting(UserSummary::id)
+                .containsExactly(first.getId(), deactivated.getId());
+    }
+
+    @Test
+    void rolesOfTheWholePageAreLoadedInOneStatement() {
+        User first = createUser();
+        User admin = userService.createUser("Page", "Admin", uniqueEmail(), PASSWORD, null,
+                Set.of("ROLE_USER", "ROLE_ADMIN"));
+        createUser();
+
+        statistics.clear();
+        UserPage page = userService.getUsers(first.getId() - 1, 3);
+
+        // the ids of the page, then the users joined with their roles
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(page.items()).filteredOn(item -> item.id().equals(admin.getId()))
+                .singleElement()
+                .extracting(UserSummary::roles)
+                .isEqualTo(List.of("ROLE_ADMIN", "ROLE_USER"));
+    }
+
+    // Inserted directly, without hashing; returns the lowest new id
+    private long seedUsers(int count) {
+        String prefix = "page-" + UUID.randomUUID() + "-";
+        jdbcTemplate.update("insert into users (first_name, last_name, email, password_hash, is_active, "
+                + "created_at, security_version, version) "
+                + "select 'Page', 'User', ? || x || '@example.com', 'hash', true, current_timestamp, 0, 0 "
+                + "from system_range(1, ?)", prefix, count);
+        return jdbcTemplate.queryForObject("select min(id) from users where email like ?", Long.class,
+                prefix + "%");
+    }
+}
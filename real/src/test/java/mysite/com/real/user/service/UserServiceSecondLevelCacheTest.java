@@ -0,0 +1,126 @@
+package mysite.com.real.user.service;
+
+import mysite.com.real.cache.service.EntityCacheInvalidator;
+import mysite.com.real.role.entity.Role;
+import mysite.com.real.role.service.RoleService;
+import mysite.com.real.support.IntegrationTest;
+import mysite.com.real.user.entity.User;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// With the l2cache profile (on top of "test"): reads are served from the second-level cache
+// and every UserService/RoleService write evicts exactly the regions that could now be stale
+@ActiveProfiles("l2cache")
+class UserServiceSecondLevelCacheTest extends IntegrationTest {
+
+    private static final String USER_ROLES = User.class.getName() + ".roles";
+
+    @Autowired
+    private RoleService roleService;
+
+    private Cache cache;
+
+    @BeforeEach
+    void setUpCache() {
+        cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+
+    @Test
+    void repeatedLookupByEmailIsServedFromTheCache() throws InterruptedException {
+        User user = createUser();
+        // Query results cached in the same millisecond as the insert count as stale
+        Thread.sleep(5);
+        userService.getUserByEmail(user.getEmail());
+
+        statistics.clear();
+        userService.getUserByEmail(user.getEmail());
+
+        assertThat(statistics.getQueryRegionStatistics(EntityCacheInvalidator.USERS_BY_EMAIL_REGION).getHitCount())
+                .isEqualTo(1);
+        assertThat(statistics.getDomainDataRegionStatistics(EntityCacheInvalidator.USERS_REGION).getHitCount())
+                .isPositive();
+        assertThat(cache.containsEntity(User.class, user.getId())).isTrue();
+    }
+
+    @Test
+    void deactivationEvictsTheUserAndEmailLookups() {
+        User user = createUser();
+        userService.getUserByEmail(user.getEmail());
+        assertThat(cache.containsEntity(User.class, user.getId())).isTrue();
+
+        userService.deactivateUser(user.getId());
+
+        assertThat(cache.containsEntity(User.class, user.getId())).isFalse();
+        assertThat(userService.getUserByEmail(user.getEmail()).orElseThrow().isActive()).isFalse();
+    }
+
+    @Test
+    void roleAssignmentEvictsTheUsersRoleCollection() {
+        User user = createUser();
+        userService.getUserById(user.getId());
+        assertThat(cache.containsCollection(USER_ROLES, user.getId())).isTrue();
+
+        userService.assignRoleToUser(user.getId(), "ROLE_ADMIN");
+
+        assertThat(cache.containsCollection(USER_ROLES, user.getId())).isFalse();
+        assertThat(userService.getUserById(user.getId()).orElseThrow().getRoles())
+                .extracting(Role::getName)
+                .containsExactlyInAnyOrder("ROLE_USER", "ROLE_ADMIN");
+    }
+
+    @Test
+    void batchDeactivationEvictsOnlyTheChangedUsers() {
+        User changed = createUser();
+        User untouched = createUser();
+        userService.getUserById(changed.getId());
+        userService.getUserById(untouched.getId());
+
+        userService.deactivateUsers(List.of(changed.getId()));
+
+        assertThat(cache.containsEntity(User.class, changed.getId())).isFalse();
+        // The bulk UPDATE also makes Hibernate drop the whole users region locally,
+        // so only the role collection shows the eviction was per user
+        assertThat(cache.containsCollection(USER_ROLES, untouched.getId())).isTrue();
+    }
+
+    @Test
+    void roleRenameEvictsRolesAndNameLookups() {
+        String name = "ROLE_TEMP_" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        Role role = roleService.createRole(name);
+        roleService.getRoleById(role.getId());
+        roleService.getRoleByName(name);
+        assertThat(cache.containsEntity(Role.class, role.getId())).isTrue();
+
+        roleService.updateRole(role.getId(), name + "_RENAMED");
+
+        assertThat(cache.containsEntity(Role.class, role.getId())).isFalse();
+        assertThat(roleService.getRoleByName(name)).isEmpty();
+        assertThat(roleService.getRoleByName(name + "_RENAMED")).isPresent();
+        roleService.deleteRole(role.getId());
+    }
+
+    @Test
+    void evictionBroadcastFromAnotherNodeIsApplied() {
+        User user = createUser();
+        userService.getUserById(user.getId());
+        assertThat(cache.containsEntity(User.class, user.getId())).isTrue();
+
+        listenerFor("l2cache:evict").onMessage(new DefaultMessage("l2cache:evict".getBytes(StandardCharsets.UTF_8),
+                ("other-node users " + user.getId()).getBytes(StandardCharsets.UTF_8)), null);
+
+        assertThat(cache.containsEntity(User.class, user.getId())).isFalse();
+        assertThat(cache.containsCollection(USER_ROLES, user.getId())).isFalse();
+    }
+}
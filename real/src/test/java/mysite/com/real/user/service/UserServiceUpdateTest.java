@@ -0,0 +1,112 @@
+package mysite.com.real.user.service;
+
+import mysite.com.real.role.entity.Role;
+import mysite.com.real.role.service.RoleService;
+import mysite.com.real.support.IntegrationTest;
+import mysite.com.real.user.entity.User;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Pins the statements the targeted user updates issue and the optimistic lock behaviour
+class UserServiceUpdateTest extends IntegrationTest {
+
+    @Autowired
+    private RoleService roleService;
+
+    @Test
+    void deactivateIsOneSelectAndOneUpdate() {
+        User user = createUser();
+
+        statistics.clear();
+        userService.deactivateUser(user.getId());
+
+        // select versions, update is_active
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        User reloaded = userService.getUserById(user.getId()).orElseThrow();
+        assertThat(reloaded.isActive()).isFalse();
+        assertThat(reloaded.getSecurityVersion()).isEqualTo(user.getSecurityVersion() + 1);
+        assertThat(reloaded.getVersion()).isEqualTo(user.getVersion() + 1);
+    }
+
+    @Test
+    void staleExpectedVersionIsRejected() {
+        User user = createUser();
+        userService.changePassword(user.getId(), "another-password");
+
+        assertThatThrownBy(() -> userService.deactivateUser(user.getId(), user.getVersion()))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(userService.getUserById(user.getId()).orElseThrow().isActive()).isTrue();
+    }
+
+    @Test
+    void assigningARoleTwiceChangesNothing() {
+        User user = createUser();
+        userService.assignRoleToUser(user.getId(), "ROLE_ADMIN");
+        long version = userService.getUserById(user.getId()).orElseThrow().getVersion();
+
+        statistics.clear();
+        userService.assignRoleToUser(user.getId(), "ROLE_ADMIN");
+
+        // select versions, insert ... where not exists (no row)
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(userService.getUserById(user.getId()).orElseThrow().getVersion()).isEqualTo(version);
+    }
+
+    @Test
+    void batchRoleAssignmentIsThreeStatements() {
+        List<Long> ids = List.of(createUser().getId(), createUser().getId(), createUser().getId());
+
+        statistics.clear();
+        int changed = userService.assignRoleToUsers(ids, "ROLE_ADMIN");
+
+        // lock users without the role, insert user_roles, bump versions
+        assertThat(changed).isEqualTo(3);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(userService.assignRoleToUsers(ids, "ROLE_ADMIN")).isZero();
+        assertThat(userService.removeRoleFromUsers(ids, "ROLE_ADMIN")).isEqualTo(3);
+        assertThat(userService.getUserById(ids.getFirst()).orElseThrow().getRoles())
+                .extracting(Role::getName)
+                .containsExactly("ROLE_USER");
+    }
+
+    @Test
+    void batchDeactivationSkipsUsersAlreadyInactive() {
+        User first = createUser();
+        User second = createUser();
+        userService.deactivateUser(first.getId());
+
+        assertThat(userService.deactivateUsers(List.of(first.getId(), second.getId()))).isEqualTo(1);
+        assertThat(userService.getUserById(second.getId()).orElseThrow().isActive()).isFalse();
+    }
+
+    @Test
+    void renamingARoleBumpsTheSecurityVersionOfItsHoldersOnly() {
+        String name = "ROLE_RENAME_" + UUID.randomUUID().toString().substring(0, 8).toUpperCase(Locale.ROOT);
+        Role role = roleService.createRole(name);
+        User holder = createUser();
+        User other = createUser();
+        userService.assignRoleToUser(holder.getId(), name);
+        long holderVersion = userService.getUserById(holder.getId()).orElseThrow().getSecurityVersion();
+
+        statistics.clear();
+        assertThat(userService.revokeRoleHolders(role.getId())).isEqualTo(1);
+        // lock the holders, bump versions
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+
+        roleService.updateRole(role.getId(), name + "_RENAMED");
+
+        assertThat(userService.getUserById(holder.getId()).orElseThrow().getSecurityVersion())
+                .isEqualTo(holderVersion + 2);
+        assertThat(userService.getUserById(other.getId()).orElseThrow().getSecurityVersion())
+                .isEqualTo(other.getSecurityVersion());
+    }
+}
@@ -0,0 +1,35 @@
+-- The schema ddl-auto=update left behind before migrations existed, as found on databases
+-- that Flyway baselines at version 1. Kept apart from V1 so a change there cannot hide here.
+
+create table roles (
+    id bigint not null auto_increment,
+    name varchar(255) not null,
+    primary key (id),
+    constraint uk_roles_name unique (name)
+);
+
+create table users (
+    id bigint not null auto_increment,
+    first_name varchar(255) not null,
+    last_name varchar(255) not null,
+    email varchar(255) not null,
+    password_hash varchar(255) not null,
+    phone varchar(255),
+    is_active bit not null,
+    created_at datetime(6) not null,
+    updated_at datetime(6),
+    name varchar(255),
+    primary key (id),
+    constraint uk_users_email unique (email)
+);
+
+create table user_roles (
+    user_id bigint not null,
+    role_id bigint not null,
+    primary key (user_id, role_id),
+    constraint fk_user_roles_user foreign key (user_id) references users (id),
+    constraint fk_user_roles_role foreign key (role_id) references roles (id)
+);
+
+insert into users (first_name, last_name, email, password_hash, is_active, created_at)
+values ('Legacy', 'User', 'legacy@example.com', 'x', true, current_timestamp);